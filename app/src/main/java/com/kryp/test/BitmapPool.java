@@ -0,0 +1,102 @@
+package com.kryp.test;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bitmap 对象池
+ * 按尺寸缓存可变的 ARGB_8888 Bitmap，截图、裁剪等环节从池中取用并在用完后归还，
+ * 预热之后截图循环不再分配新的 Bitmap。
+ * 被调用方直接 recycle() 的 Bitmap 不会回到池中，只会导致之后一次未命中。
+ */
+public class BitmapPool {
+    // 每种尺寸最多缓存的 Bitmap 数量
+    private static final int MAX_PER_SIZE = 4;
+
+    private static BitmapPool instance;
+
+    private final Map<Long, ArrayDeque<Bitmap>> pools = new HashMap<>();
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * 获取全局对象池
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool();
+        }
+        return instance;
+    }
+
+    /**
+     * 取出指定尺寸的 Bitmap，池中没有时新建
+     * 取出的 Bitmap 内容未定义，调用方需要完整覆盖
+     */
+    public synchronized Bitmap acquire(int width, int height) {
+        ArrayDeque<Bitmap> pool = pools.get(key(width, height));
+        while (pool != null && !pool.isEmpty()) {
+            Bitmap bitmap = pool.pollLast();
+            if (!bitmap.isRecycled()) {
+                hitCount++;
+                return bitmap;
+            }
+        }
+        missCount++;
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 归还 Bitmap，池已满或不可复用时直接回收
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+        long key = key(bitmap.getWidth(), bitmap.getHeight());
+        ArrayDeque<Bitmap> pool = pools.get(key);
+        if (pool == null) {
+            pool = new ArrayDeque<>(MAX_PER_SIZE);
+            pools.put(key, pool);
+        }
+        if (pool.contains(bitmap)) {
+            return;
+        }
+        if (pool.size() >= MAX_PER_SIZE) {
+            bitmap.recycle();
+            return;
+        }
+        pool.addLast(bitmap);
+    }
+
+    /**
+     * 回收池中所有 Bitmap
+     */
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> pool : pools.values()) {
+            for (Bitmap bitmap : pool) {
+                bitmap.recycle();
+            }
+        }
+        pools.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,214 @@
+package com.kryp.test;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 特权截图服务
+ * 作为 Shizuku UserService 运行在 shell 权限的独立进程中，通过系统隐藏的截图接口在进程内截图，
+ * 像素写入共享内存中的环形缓冲区，应用进程只需一次 Binder 调用拿到帧序号，不再创建 screencap 进程，
+ * 也不经过管道传输和 PNG 编解码。
+ * 该进程由 app_process 启动，没有 Context，也不受隐藏 API 限制。
+ * 需要 Android 8.1 (SharedMemory) 及以上；截图接口不可用时 capture() 返回失败，由应用退回其他截图方式。
+ */
+public class CaptureService extends ICaptureService.Stub {
+    private static final String TAG = "CaptureService";
+
+    // Surface.ROTATION_90 / ROTATION_270
+    private static final int ROTATION_90 = 1;
+    private static final int ROTATION_270 = 3;
+
+    private SharedMemory memory;
+    private ByteBuffer mapped;
+    private SharedFrameBuffer frames;
+    private long nextFrame;
+
+    // 反射得到的截图接口，首次使用时查找
+    private Method captureMethod;
+    private Object captureTarget;
+    private Object[] captureArgs;
+
+    public CaptureService() {
+        Log.d(TAG, "截图服务已启动, SDK " + Build.VERSION.SDK_INT);
+    }
+
+    @Override
+    public void destroy() {
+        Log.d(TAG, "截图服务退出");
+        System.exit(0);
+    }
+
+    @Override
+    public synchronized SharedMemory openBuffer(int slotCount) {
+        try {
+            int[] size = getDisplaySize();
+            int capacity = size[0] * size[1] * 4;
+            closeBuffer();
+            memory = SharedMemory.create("kryp-frames", SharedFrameBuffer.totalSize(slotCount, capacity));
+            mapped = memory.mapReadWrite();
+            frames = SharedFrameBuffer.format(mapped, slotCount, capacity);
+            nextFrame = 0;
+            Log.d(TAG, "帧缓冲区: " + slotCount + " 个槽位, " + size[0] + "x" + size[1]);
+            return memory;
+        } catch (ErrnoException | ReflectiveOperationException e) {
+            Log.e(TAG, "创建帧缓冲区失败", e);
+            closeBuffer();
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized long capture() {
+        if (frames == null) {
+            return -1;
+        }
+        Bitmap bitmap = null;
+        try {
+            long captureNanos = System.nanoTime();
+            bitmap = screenshot();
+            if (bitmap == null) {
+                return -1;
+            }
+            if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+                // 新版本系统返回硬件 Bitmap，需要先复制到内存才能读取像素
+                Bitmap software = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+                bitmap.recycle();
+                bitmap = software;
+            }
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            if (width * height * 4 > frames.getSlotCapacity()) {
+                return -2;
+            }
+            long frame = nextFrame++;
+            ByteBuffer pixels = frames.beginWrite(frame);
+            bitmap.copyPixelsToBuffer(pixels);
+            frames.endWrite(frame, width, height, captureNanos);
+            return frame;
+        } catch (Exception e) {
+            Log.e(TAG, "截图失败", e);
+            return -1;
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    private void closeBuffer() {
+        if (mapped != null) {
+            SharedMemory.unmap(mapped);
+            mapped = null;
+        }
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+        frames = null;
+    }
+
+    /**
+     * 按系统版本调用对应的隐藏截图接口
+     */
+    private Bitmap screenshot() throws ReflectiveOperationException {
+        if (Build.VERSION.SDK_INT >= 34) {
+            return screenshotByWindowManager();
+        }
+        if (captureMethod == null) {
+            findSurfaceControlCapture();
+        }
+        Object[] args = captureArgs;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && Build.VERSION.SDK_INT < Build.VERSION_CODES.S) {
+            // 旧接口按屏幕自然方向截图，传入当前方向的尺寸和反向的旋转角度得到与屏幕一致的画面
+            int[] size = getDisplaySize();
+            int rotation = getDisplayRotation();
+            if (rotation == ROTATION_90) {
+                rotation = ROTATION_270;
+            } else if (rotation == ROTATION_270) {
+                rotation = ROTATION_90;
+            }
+            args = new Object[]{new Rect(), size[0], size[1], rotation};
+        } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            int[] size = getDisplaySize();
+            args = new Object[]{size[0], size[1]};
+        }
+        Object result = captureMethod.invoke(captureTarget, args);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            // ScreenshotHardwareBuffer
+            return result != null ? (Bitmap) result.getClass().getMethod("asBitmap").invoke(result) : null;
+        }
+        return (Bitmap) result;
+    }
+
+    /**
+     * Android 8.1 - 13：SurfaceControl 上的静态截图方法
+     */
+    private void findSurfaceControlCapture() throws ReflectiveOperationException {
+        Class<?> surfaceControl = Class.forName("android.view.SurfaceControl");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            IBinder display = (IBinder) surfaceControl.getMethod("getInternalDisplayToken").invoke(null);
+            Class<?> builderClass = Class.forName("android.view.SurfaceControl$DisplayCaptureArgs$Builder");
+            Object builder = builderClass.getConstructor(IBinder.class).newInstance(display);
+            Object args = builderClass.getMethod("build").invoke(builder);
+            Class<?> argsClass = Class.forName("android.view.SurfaceControl$DisplayCaptureArgs");
+            captureMethod = surfaceControl.getMethod("captureDisplay", argsClass);
+            captureArgs = new Object[]{args};
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            captureMethod = surfaceControl.getMethod("screenshot", Rect.class, int.class, int.class, int.class);
+        } else {
+            captureMethod = surfaceControl.getMethod("screenshot", int.class, int.class);
+        }
+        captureTarget = null;
+    }
+
+    /**
+     * Android 14 起：IWindowManager.captureDisplay 配合同步回调
+     */
+    private Bitmap screenshotByWindowManager() throws ReflectiveOperationException {
+        if (captureMethod == null) {
+            Class<?> serviceManager = Class.forName("android.os.ServiceManager");
+            IBinder binder = (IBinder) serviceManager.getMethod("getService", String.class).invoke(null, "window");
+            Class<?> stub = Class.forName("android.view.IWindowManager$Stub");
+            captureTarget = stub.getMethod("asInterface", IBinder.class).invoke(null, binder);
+            Class<?> captureArgsClass = Class.forName("android.window.ScreenCapture$CaptureArgs");
+            Class<?> listenerClass = Class.forName("android.window.ScreenCapture$ScreenCaptureListener");
+            captureMethod = captureTarget.getClass().getMethod("captureDisplay",
+                int.class, captureArgsClass, listenerClass);
+        }
+        Object listener = Class.forName("android.window.ScreenCapture")
+            .getMethod("createSyncCaptureListener").invoke(null);
+        captureMethod.invoke(captureTarget, 0, null, listener);
+        Object buffer = listener.getClass().getMethod("getBuffer").invoke(listener);
+        return buffer != null ? (Bitmap) buffer.getClass().getMethod("asBitmap").invoke(buffer) : null;
+    }
+
+    /**
+     * 当前方向下的屏幕尺寸 {宽, 高}
+     */
+    private static int[] getDisplaySize() throws ReflectiveOperationException {
+        Object info = getDisplayInfo();
+        return new int[]{
+            info.getClass().getField("logicalWidth").getInt(info),
+            info.getClass().getField("logicalHeight").getInt(info)
+        };
+    }
+
+    private static int getDisplayRotation() throws ReflectiveOperationException {
+        Object info = getDisplayInfo();
+        return info.getClass().getField("rotation").getInt(info);
+    }
+
+    private static Object getDisplayInfo() throws ReflectiveOperationException {
+        Class<?> global = Class.forName("android.hardware.display.DisplayManagerGlobal");
+        Object instance = global.getMethod("getInstance").invoke(null);
+        return global.getMethod("getDisplayInfo", int.class).invoke(instance, 0);
+    }
+}
@@ -0,0 +1,1145 @@
+package com.kryp.test;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 检测流水线
+ * 将 截图 → 裁剪 → OCR → 决策 → 执行 拆分为各自线程上的独立阶段，阶段之间使用有界队列连接。
+ * 截图、裁剪、OCR 之间的队列只保留最新一帧（旧帧直接丢弃），
+ * 因此第 N+1 帧的截图可以与第 N 帧的 OCR 同时进行，主线程不参与任何检测工作。
+ * 决策由 RuleSet 驱动：每一帧只截取、识别当前状态关注的区域，按顺序检查规则并执行第一条触发的规则。
+ * 模板触发条件在 OCR 阶段先做模板匹配，只有得分落在阈值以下的模糊区间、且配置了关键字时才对该区域做 OCR。
+ * 取色触发条件在截图阶段直接读取截图像素；当前状态排在最前面的若干条规则都是取色规则时，
+ * 截图阶段即可得出结论并直接交给执行阶段，不必等待裁剪和 OCR。
+ */
+public class DetectionPipeline {
+    private static final String TAG = "DetectionPipeline";
+    // 连续点击时每批手势的最长跨度，决定触发条件消失后最多还会多点多久
+    private static final long REPEAT_BATCH_SPAN_MS = 200;
+    // 连续点击期间多久没有再次触发就停止，实际取它与三个检测间隔中的较大者
+    private static final long REPEAT_HOLD_MS = 1000;
+
+    /**
+     * 流水线事件监听器
+     * 回调在流水线工作线程中执行，更新 UI 时需自行切换到主线程
+     */
+    public interface Listener {
+        void onStopped(String reason);
+    }
+
+    /**
+     * 流水线配置
+     */
+    public static class Config {
+        public ScreenshotHelper.ScreenshotMode screenshotMode = ScreenshotHelper.ScreenshotMode.PIPE;
+        // 截图时只流式解码当前状态的区域，不再解码整屏
+        public boolean regionDecode = true;
+        // 画面变化阈值，区域未变化时跳过 OCR，0 表示不跳过
+        public int changeThreshold = FrameChangeGate.DEFAULT_THRESHOLD;
+        // 识别前的预处理（缩小、灰度、二值化），为 null 时直接识别裁剪出的区域
+        public OcrPreprocessor ocrPreprocessor;
+        // 多个区域需要识别时拼成一张图只识别一次
+        public boolean ocrBatching = true;
+        public long detectionIntervalMs = 1000;
+        public DetectionScheduler.Mode scheduleMode = DetectionScheduler.Mode.FIXED_DELAY;
+        // 自适应调度的间隔范围
+        public long minDetectionIntervalMs = 200;
+        public long maxDetectionIntervalMs = 3000;
+        public long clickIntervalMs = 500;
+        public RuleSet rules;
+    }
+
+    /**
+     * 在各阶段之间流转的帧数据
+     */
+    static class Frame {
+        final long seq;
+        final long captureTime;
+        // 开始截图时的 System.nanoTime()，用于统计端到端延迟
+        final long captureNanos;
+        // 截图时所处的状态
+        final RuleSet.State state;
+        // 截图坐标与屏幕坐标的换算，截图完成后按实际尺寸确定
+        DisplayGeometry.Mapping mapping;
+        // 截图（整屏或覆盖所有区域的最小区域）及其左上角在整帧中的位置
+        Bitmap screenshot;
+        int frameWidth;
+        int frameHeight;
+        int originX;
+        int originY;
+        RegionImage[] regions;
+        // 当前状态各取色点是否满足，第 i 位对应 state.getProbes() 中第 i 个取色点
+        long probeMatches;
+        // 是否有区域重新识别或取色点颜色变化（画面发生变化）
+        boolean changed;
+
+        Frame(long seq, long captureTime, long captureNanos, RuleSet.State state) {
+            this.seq = seq;
+            this.captureTime = captureTime;
+            this.captureNanos = captureNanos;
+            this.state = state;
+        }
+
+        RegionImage findRegion(String name) {
+            if (regions != null) {
+                for (RegionImage image : regions) {
+                    if (image.region.name.equals(name)) {
+                        return image;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 将帧持有的 Bitmap 归还到对象池
+         */
+        void release() {
+            if (regions != null) {
+                for (RegionImage image : regions) {
+                    if (image.bitmap != null && image.bitmap != screenshot) {
+                        ScreenshotHelper.releaseBitmap(image.bitmap);
+                    }
+                    image.bitmap = null;
+                }
+            }
+            if (screenshot != null) {
+                ScreenshotHelper.releaseBitmap(screenshot);
+                screenshot = null;
+            }
+        }
+    }
+
+    /**
+     * 帧中的一个监视区域
+     */
+    static class RegionImage {
+        final RuleSet.Region region;
+        // 区域在整帧截图中的像素矩形 {left, top, right, bottom}
+        final int[] bounds;
+        Bitmap bitmap;
+        OcrResult result;
+        // 识别结果沿用自上一次识别（画面未变化）
+        boolean resultReused;
+        // 各模板触发条件在该区域中的最佳匹配
+        Map<RuleSet.Trigger, TemplateMatcher.Match> templateMatches;
+
+        RegionImage(RuleSet.Region region, int[] bounds) {
+            this.region = region;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * 触发的规则，以及触发条件定位到的屏幕坐标
+     */
+    static class Firing {
+        final RuleSet.State state;
+        final RuleSet.Rule rule;
+        final int x;
+        final int y;
+        // 触发帧开始截图时的 System.nanoTime()
+        final long captureNanos;
+
+        Firing(Frame frame, RuleSet.Rule rule, int x, int y) {
+            this.state = frame.state;
+            this.rule = rule;
+            this.x = x;
+            this.y = y;
+            this.captureNanos = frame.captureNanos;
+        }
+    }
+
+    /**
+     * 容量为 1 的帧队列
+     * 写入时若上一帧尚未被取走则直接丢弃旧帧，读取方总是拿到最新一帧
+     */
+    static class LatestFrameSlot {
+        private Frame frame;
+        private boolean closed;
+        private final AtomicLong dropped;
+
+        LatestFrameSlot(AtomicLong dropped) {
+            this.dropped = dropped;
+        }
+
+        synchronized void put(Frame newFrame) {
+            if (closed) {
+                newFrame.release();
+                return;
+            }
+            if (frame != null) {
+                frame.release();
+                dropped.incrementAndGet();
+            }
+            frame = newFrame;
+            notifyAll();
+        }
+
+        synchronized Frame take() throws InterruptedException {
+            while (frame == null && !closed) {
+                wait();
+            }
+            Frame result = frame;
+            frame = null;
+            return result;
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (frame != null) {
+                frame.release();
+                frame = null;
+            }
+            notifyAll();
+        }
+    }
+
+    private final Config config;
+    private final OcrHelper ocrHelper;
+    private final Listener listener;
+
+    private final AtomicLong capturedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong recognizedCount = new AtomicLong();
+    private final AtomicLong ocrCallCount = new AtomicLong();
+    private final AtomicLong probeFiringCount = new AtomicLong();
+
+    private final LatestFrameSlot captureSlot = new LatestFrameSlot(droppedCount);
+    private final LatestFrameSlot cropSlot = new LatestFrameSlot(droppedCount);
+    private final LatestFrameSlot ocrSlot = new LatestFrameSlot(droppedCount);
+    private final BlockingQueue<Firing> actionQueue = new ArrayBlockingQueue<>(1);
+    private final DetectionScheduler scheduler;
+
+    // 每个 "状态/区域" 各自的变化检测和上一次识别结果，只在 OCR 线程中修改
+    private final Map<String, FrameChangeGate> changeGates = new HashMap<>();
+    private final Map<String, OcrResult> lastResults = new HashMap<>();
+    private int[] gatePixels = new int[0];
+    private final Canvas atlasCanvas = new Canvas();
+    private final TemplateMatcher templateMatcher = new TemplateMatcher();
+    private int[] templatePixels = new int[0];
+    private long lastProbeHash;
+    // 截图阶段读取取色点像素的缓冲，只在截图线程中使用
+    private int[] probePixels = new int[0];
+
+    private volatile RuleSet.State currentState;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean stopNotified = new AtomicBoolean(false);
+    // 启动时间，用于统计首帧延迟
+    private volatile long startNanos;
+    private final AtomicBoolean firstFrameRecorded = new AtomicBoolean(false);
+    private Thread[] threads;
+
+    // 正在连续点击的规则和位置，只在执行阶段线程中修改；序列自行结束时由手势回调清除
+    private volatile RuleSet.Rule repeatingRule;
+    private int repeatingX;
+    private int repeatingY;
+    private final AtomicLong repeatGeneration = new AtomicLong();
+    // 下一次允许逐次执行点击或滑动的时间 (System.nanoTime())
+    private long nextGestureNanos;
+
+    public DetectionPipeline(Config config, OcrHelper ocrHelper, Listener listener) {
+        this.config = config;
+        this.ocrHelper = ocrHelper;
+        this.listener = listener;
+        this.currentState = config.rules.getInitialState();
+        this.scheduler = new DetectionScheduler(config.scheduleMode, config.detectionIntervalMs,
+            config.minDetectionIntervalMs, config.maxDetectionIntervalMs);
+    }
+
+    /**
+     * 启动所有阶段线程
+     */
+    public synchronized void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        firstFrameRecorded.set(false);
+        threads = new Thread[]{
+            new Thread(this::runCapture, "pipeline-capture"),
+            new Thread(this::runCrop, "pipeline-crop"),
+            new Thread(this::runOcr, "pipeline-ocr"),
+            new Thread(this::runDecide, "pipeline-decide"),
+            new Thread(this::runAct, "pipeline-act")
+        };
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Log.d(TAG, "检测流水线已启动，初始状态: " + currentState.name);
+    }
+
+    /**
+     * 停止流水线，可在任意线程调用
+     */
+    public void stop() {
+        stop("已停止");
+    }
+
+    private synchronized void stop(String reason) {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        captureSlot.close();
+        cropSlot.close();
+        ocrSlot.close();
+        actionQueue.clear();
+        if (threads != null) {
+            for (Thread thread : threads) {
+                if (thread != Thread.currentThread()) {
+                    thread.interrupt();
+                }
+            }
+        }
+        Log.d(TAG, "检测流水线已停止: " + reason + "，" + getStats());
+        if (listener != null && stopNotified.compareAndSet(false, true)) {
+            listener.onStopped(reason);
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 当前状态名称
+     */
+    public String getCurrentState() {
+        return currentState.name;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public String getStats() {
+        return "截图 " + capturedCount.get() + " 帧，识别 " + recognizedCount.get()
+            + " 个区域 (OCR " + ocrCallCount.get() + " 次)，截图阶段取色触发 " + probeFiringCount.get()
+            + " 次，丢弃 " + droppedCount.get() + " 帧，未变化跳过 "
+            + Math.round(getSkipRatio() * 100) + "%，Bitmap 池未命中 "
+            + BitmapPool.getInstance().getMissCount() + " 次，调度: " + scheduler;
+    }
+
+    /**
+     * 因画面未变化而跳过 OCR 的区域占比
+     */
+    public float getSkipRatio() {
+        long checked = 0;
+        long skipped = 0;
+        synchronized (changeGates) {
+            for (FrameChangeGate gate : changeGates.values()) {
+                checked += gate.getCheckedCount();
+                skipped += gate.getSkippedCount();
+            }
+        }
+        return checked == 0 ? 0f : (float) skipped / checked;
+    }
+
+    /**
+     * 截图阶段：按调度器给出的时间持续截图
+     */
+    private void runCapture() {
+        long seq = 0;
+        while (running.get()) {
+            try {
+                scheduler.onCaptureStarted();
+                Frame frame = captureFrame(seq, currentState);
+                if (config.screenshotMode == ScreenshotHelper.ScreenshotMode.FILE) {
+                    ScreenshotHelper.deleteScreenshotFile();
+                }
+                if (frame == null) {
+                    Log.e(TAG, "截图失败");
+                } else {
+                    seq++;
+                    capturedCount.incrementAndGet();
+                    Firing firing = readProbes(frame);
+                    if (firing == null) {
+                        captureSlot.put(frame);
+                    } else {
+                        // 取色规则已经决定了本帧的结果，后续阶段无需处理
+                        frame.release();
+                        recordFirstFrame();
+                        probeFiringCount.incrementAndGet();
+                        scheduler.onFrameResult(frame.changed, true);
+                        if (!dispatch(firing)) {
+                            break;
+                        }
+                    }
+                }
+                scheduler.awaitNextCapture();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "截图阶段异常", e);
+            }
+        }
+    }
+
+    /**
+     * 截取当前状态关注的区域
+     * 区域单位一致时只截取并解码覆盖所有区域的最小区域，否则截取整屏
+     * 截图方向与当前屏幕方向不一致（截图期间发生旋转）时丢弃该帧
+     */
+    private Frame captureFrame(long seq, RuleSet.State state) {
+        DisplayGeometry geometry = DisplayGeometry.getInstance();
+        Frame frame = new Frame(seq, System.currentTimeMillis(), System.nanoTime(), state);
+
+        FrameRegion bounds = config.regionDecode ? state.getBounds() : null;
+        if (bounds != null) {
+            int[] outBounds = new int[4];
+            FrameRegion captureBounds = geometry.expectedMapping(config.screenshotMode).toCapture(bounds);
+            Bitmap bitmap = ScreenshotHelper.captureRegion(config.screenshotMode, captureBounds, outBounds);
+            if (bitmap == null) {
+                return null;
+            }
+            frame.screenshot = bitmap;
+            frame.frameWidth = outBounds[0];
+            frame.frameHeight = outBounds[1];
+            frame.originX = outBounds[2];
+            frame.originY = outBounds[3];
+        } else {
+            Bitmap bitmap = ScreenshotHelper.captureScreen(config.screenshotMode);
+            if (bitmap == null) {
+                return null;
+            }
+            frame.screenshot = bitmap;
+            frame.frameWidth = bitmap.getWidth();
+            frame.frameHeight = bitmap.getHeight();
+        }
+        frame.mapping = geometry.get() != null
+            ? geometry.mapping(frame.frameWidth, frame.frameHeight)
+            : new DisplayGeometry.Mapping(frame.frameWidth, frame.frameHeight, frame.frameWidth, frame.frameHeight);
+        if (frame.mapping == null) {
+            Log.d(TAG, "截图方向与屏幕不一致，丢弃第 " + seq + " 帧");
+            ScreenshotHelper.releaseBitmap(frame.screenshot);
+            return null;
+        }
+        return frame;
+    }
+
+    /**
+     * 读取当前状态所有取色点处的像素
+     * @return 排在最前面的取色规则中第一条成立的规则；遇到非取色规则前没有成立的规则时返回 null，交给决策阶段判断
+     */
+    private Firing readProbes(Frame frame) {
+        List<PixelProbe> probes = frame.state.getProbes();
+        if (probes.isEmpty()) {
+            return null;
+        }
+        Bitmap screenshot = frame.screenshot;
+        if (probePixels.length < probes.size()) {
+            probePixels = new int[probes.size()];
+        }
+        int[] pixels = probePixels;
+        long hash = frame.state.hashCode();
+        long matches = 0;
+        for (int i = 0; i < probes.size(); i++) {
+            PixelProbe probe = probes.get(i);
+            int[] point = frame.mapping.toCapture(probe.x, probe.y);
+            int x = point[0] - frame.originX;
+            int y = point[1] - frame.originY;
+            if (x >= 0 && y >= 0 && x < screenshot.getWidth() && y < screenshot.getHeight()) {
+                pixels[i] = screenshot.getPixel(x, y);
+            } else {
+                pixels[i] = PixelProbe.MISSING;
+            }
+            hash = hash * 31 + pixels[i];
+            if (probe.matchesPixel(pixels[i])) {
+                matches |= 1L << i;
+            }
+        }
+        frame.probeMatches = matches;
+        frame.changed = hash != lastProbeHash;
+        lastProbeHash = hash;
+
+        if (frame.state != currentState) {
+            return null;
+        }
+        for (RuleSet.Rule rule : frame.state.rules) {
+            if (rule.trigger.type != RuleSet.TriggerType.PIXEL) {
+                return null;
+            }
+            Firing firing = matchProbes(frame, rule);
+            if (firing != null) {
+                return firing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 裁剪阶段：从截图中裁剪出各个区域，随后立即释放截图
+     */
+    private void runCrop() {
+        while (running.get()) {
+            Frame frame = null;
+            try {
+                frame = captureSlot.take();
+                if (frame == null) {
+                    break;
+                }
+                cropRegions(frame);
+                if (frame.screenshot != null) {
+                    // 截图用完立即归还，供下一次截图复用
+                    ScreenshotHelper.releaseBitmap(frame.screenshot);
+                    frame.screenshot = null;
+                }
+                cropSlot.put(frame);
+                frame = null;
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "裁剪阶段异常", e);
+            } finally {
+                if (frame != null) {
+                    frame.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按区域裁剪截图
+     * 区域恰好等于整张截图时直接转移所有权，不再复制
+     */
+    private void cropRegions(Frame frame) {
+        List<RuleSet.Region> regions = frame.state.regions;
+        frame.regions = new RegionImage[regions.size()];
+        Bitmap screenshot = frame.screenshot;
+        for (int i = 0; i < regions.size(); i++) {
+            RuleSet.Region region = regions.get(i);
+            int[] bounds = frame.mapping.toCapture(region.bounds).resolve(frame.frameWidth, frame.frameHeight);
+            RegionImage image = new RegionImage(region, bounds);
+            frame.regions[i] = image;
+            if (bounds == null) {
+                Log.e(TAG, "区域超出屏幕范围: " + region.name);
+                continue;
+            }
+            int x = bounds[0] - frame.originX;
+            int y = bounds[1] - frame.originY;
+            int width = bounds[2] - bounds[0];
+            int height = bounds[3] - bounds[1];
+            if (x == 0 && y == 0 && frame.screenshot != null
+                    && width == screenshot.getWidth() && height == screenshot.getHeight()) {
+                image.bitmap = screenshot;
+                frame.screenshot = null;
+            } else {
+                // 截图转交给前面的区域后仍然有效，可以继续从中裁剪
+                image.bitmap = ScreenshotHelper.cropBitmap(screenshot, x, y, width, height);
+            }
+        }
+    }
+
+    /**
+     * OCR 阶段：识别需要识别文字的区域
+     */
+    private void runOcr() {
+        while (running.get()) {
+            Frame frame = null;
+            try {
+                frame = cropSlot.take();
+                if (frame == null) {
+                    break;
+                }
+                List<RegionImage> pending = new ArrayList<>();
+                for (RegionImage image : frame.regions) {
+                    if (image.bitmap == null) {
+                        continue;
+                    }
+                    boolean ambiguous = image.region.hasTemplate() && matchTemplates(frame, image);
+                    if ((image.region.needsOcr() || ambiguous) && !reuseLastResult(frame.state, image)) {
+                        pending.add(image);
+                    }
+                }
+                if (config.ocrBatching && pending.size() > 1) {
+                    recognizeBatch(frame.state, pending);
+                } else {
+                    for (RegionImage image : pending) {
+                        storeResult(frame.state, image, recognize(image));
+                    }
+                }
+                frame.changed |= !pending.isEmpty();
+                ocrSlot.put(frame);
+                frame = null;
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "OCR 阶段异常", e);
+            } finally {
+                if (frame != null) {
+                    frame.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 在区域中匹配当前状态引用该区域的所有模板
+     * @return 有得分落在模糊区间、需要 OCR 复核的触发条件时返回 true
+     */
+    private boolean matchTemplates(Frame frame, RegionImage image) {
+        Bitmap bitmap = image.bitmap;
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        boolean loaded = false;
+        boolean ambiguous = false;
+        image.templateMatches = new HashMap<>();
+        for (RuleSet.Rule rule : frame.state.rules) {
+            RuleSet.Trigger trigger = rule.trigger;
+            if (trigger.type != RuleSet.TriggerType.TEMPLATE || !image.region.name.equals(trigger.region)) {
+                continue;
+            }
+            // 模板按屏幕尺寸保存，截图被缩小时同比缩小模板
+            TemplateMatcher.Template template = TemplateLibrary.getInstance()
+                .get(trigger.template, frame.mapping.getScaleX());
+            if (template == null) {
+                continue;
+            }
+            if (!loaded) {
+                if (templatePixels.length < width * height) {
+                    templatePixels = new int[width * height];
+                }
+                bitmap.getPixels(templatePixels, 0, width, 0, 0, width, height);
+                loaded = true;
+            }
+            TemplateMatcher.Match match = templateMatcher.match(template, templatePixels, width, height);
+            if (match == null) {
+                continue;
+            }
+            image.templateMatches.put(trigger, match);
+            Log.d(TAG, "模板匹配 [" + rule.name + "]: " + match);
+            if (match.score < trigger.threshold && match.score >= trigger.threshold - trigger.ambiguity
+                    && !trigger.keywords.isEmpty()) {
+                ambiguous = true;
+            }
+        }
+        return ambiguous;
+    }
+
+    /**
+     * 画面未变化时沿用上一次的识别结果
+     * @return 已沿用返回 true，需要重新识别返回 false
+     */
+    boolean reuseLastResult(RuleSet.State state, RegionImage image) {
+        String key = state.name + "/" + image.region.name;
+        OcrResult last = lastResults.get(key);
+        boolean changed = hasRegionChanged(key, image.bitmap);
+        if (!changed && last != null) {
+            image.result = last;
+            image.resultReused = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 保存区域的识别结果，供画面未变化时沿用
+     * 识别超时或失败（result 为 null）时本帧按空结果处理，但不保存，并丢弃该区域的变化检测参照，
+     * 下一帧即使画面未变化也会重新识别
+     */
+    void storeResult(RuleSet.State state, RegionImage image, OcrResult result) {
+        String key = state.name + "/" + image.region.name;
+        recognizedCount.incrementAndGet();
+        if (result == null) {
+            image.result = OcrResult.EMPTY;
+            lastResults.remove(key);
+            synchronized (changeGates) {
+                FrameChangeGate gate = changeGates.get(key);
+                if (gate != null) {
+                    gate.reset();
+                }
+            }
+            Log.d(TAG, "识别失败 [" + key + "]，下一帧重新识别");
+            return;
+        }
+        image.result = result;
+        lastResults.put(key, result);
+        Log.d(TAG, "识别结果 [" + key + "]: " + result.text);
+    }
+
+    /**
+     * 识别区域图片
+     * 配置了预处理时识别预处理后的图片，结果坐标换算回区域坐标。
+     * 超时或被中断后 ML Kit 可能仍在读取送去识别的 Bitmap，此时不再归还到对象池，交由 GC 回收
+     */
+    private OcrResult recognize(RegionImage image) throws InterruptedException {
+        OcrPreprocessor preprocessor = activePreprocessor();
+        Bitmap input = preprocessor != null ? ocrHelper.preprocess(preprocessor, image.bitmap) : image.bitmap;
+        OcrResult result;
+        try {
+            result = recognizeBitmap(input);
+        } catch (TimeoutException e) {
+            Log.e(TAG, "OCR 识别超时");
+            if (input == image.bitmap) {
+                image.bitmap = null;
+            }
+            return null;
+        } catch (InterruptedException e) {
+            if (input == image.bitmap) {
+                image.bitmap = null;
+            }
+            throw e;
+        }
+        if (preprocessor != null) {
+            BitmapPool.getInstance().release(input);
+            if (result != null) {
+                result = result.scale(preprocessor.getScaleX(image.bitmap.getWidth()),
+                    preprocessor.getScaleY(image.bitmap.getHeight()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把多个区域（预处理后）拼成一张图只识别一次，再把结果分回各区域
+     * 拼图超过尺寸上限时逐个识别
+     */
+    private void recognizeBatch(RuleSet.State state, List<RegionImage> images) throws InterruptedException {
+        OcrPreprocessor preprocessor = activePreprocessor();
+        int count = images.size();
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        for (int i = 0; i < count; i++) {
+            Bitmap bitmap = images.get(i).bitmap;
+            widths[i] = preprocessor != null ? preprocessor.outputWidth(bitmap.getWidth()) : bitmap.getWidth();
+            heights[i] = preprocessor != null ? preprocessor.outputHeight(bitmap.getHeight()) : bitmap.getHeight();
+        }
+        RegionAtlas atlas = RegionAtlas.pack(widths, heights, RegionAtlas.DEFAULT_SPACING);
+        if (atlas == null) {
+            for (RegionImage image : images) {
+                storeResult(state, image, recognize(image));
+            }
+            return;
+        }
+
+        Bitmap atlasBitmap = BitmapPool.getInstance().acquire(atlas.getWidth(), atlas.getHeight());
+        atlasCanvas.setBitmap(atlasBitmap);
+        atlasCanvas.drawColor(Color.WHITE);
+        for (int i = 0; i < count; i++) {
+            Bitmap bitmap = images.get(i).bitmap;
+            Bitmap input = preprocessor != null ? ocrHelper.preprocess(preprocessor, bitmap) : bitmap;
+            atlasCanvas.drawBitmap(input, atlas.getX(i), atlas.getY(i), null);
+            if (input != bitmap) {
+                BitmapPool.getInstance().release(input);
+            }
+        }
+        atlasCanvas.setBitmap(null);
+
+        OcrResult result;
+        try {
+            result = recognizeBitmap(atlasBitmap);
+        } catch (TimeoutException e) {
+            Log.e(TAG, "OCR 识别超时 (" + count + " 个区域)");
+            for (RegionImage image : images) {
+                storeResult(state, image, null);
+            }
+            return;
+        }
+        BitmapPool.getInstance().release(atlasBitmap);
+        if (result == null) {
+            for (RegionImage image : images) {
+                storeResult(state, image, null);
+            }
+            return;
+        }
+
+        OcrResult[] parts = result.split(atlas);
+        for (int i = 0; i < count; i++) {
+            OcrResult part = parts[i];
+            if (preprocessor != null) {
+                Bitmap bitmap = images.get(i).bitmap;
+                part = part.scale(preprocessor.getScaleX(bitmap.getWidth()),
+                    preprocessor.getScaleY(bitmap.getHeight()));
+            }
+            storeResult(state, images.get(i), part);
+        }
+    }
+
+    /**
+     * 识别一张图片
+     * @return 识别结果，识别失败返回 null
+     * @throws TimeoutException 超过截止时间，ML Kit 可能仍在读取该图片
+     */
+    private OcrResult recognizeBitmap(Bitmap input) throws InterruptedException, TimeoutException {
+        ocrCallCount.incrementAndGet();
+        try {
+            return ocrHelper.recognizeAsync(input, OcrHelper.DEFAULT_TIMEOUT_MS).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw (TimeoutException) e.getCause();
+            }
+            Log.e(TAG, "OCR 识别失败", e.getCause());
+            return null;
+        }
+    }
+
+    private OcrPreprocessor activePreprocessor() {
+        OcrPreprocessor preprocessor = config.ocrPreprocessor;
+        return preprocessor != null && preprocessor.isEnabled() ? preprocessor : null;
+    }
+
+    /**
+     * 检查区域相对上一帧是否变化
+     */
+    private boolean hasRegionChanged(String key, Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = width * height;
+        if (gatePixels.length < size) {
+            gatePixels = new int[size];
+        }
+        bitmap.getPixels(gatePixels, 0, width, 0, 0, width, height);
+        synchronized (changeGates) {
+            FrameChangeGate gate = changeGates.get(key);
+            if (gate == null) {
+                gate = new FrameChangeGate(config.changeThreshold);
+                changeGates.put(key, gate);
+            }
+            return gate.hasChanged(gatePixels, width, height);
+        }
+    }
+
+    /**
+     * 决策阶段：按顺序检查当前状态的规则，交给执行阶段执行第一条触发的规则
+     */
+    private void runDecide() {
+        while (running.get()) {
+            Frame frame;
+            try {
+                frame = ocrSlot.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (frame == null) {
+                break;
+            }
+            Firing firing = null;
+            try {
+                if (frame.state == currentState) {
+                    // 状态切换之前截取的帧不再参与决策
+                    firing = evaluate(frame);
+                    scheduler.onFrameResult(frame.changed, firing != null);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "决策阶段异常", e);
+            } finally {
+                frame.release();
+            }
+            recordFirstFrame();
+            if (firing != null && !dispatch(firing)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 把触发的规则交给执行阶段
+     * 执行阶段正忙时丢弃本次点击，等待下一帧重新判断；停止和切换状态不能丢弃
+     * @return 等待时被中断返回 false
+     */
+    private boolean dispatch(Firing firing) {
+        Log.d(TAG, "规则触发: " + firing.rule.name);
+        if (!actionQueue.offer(firing) && firing.rule.isCritical()) {
+            try {
+                actionQueue.put(firing);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 返回第一条触发条件成立的规则
+     */
+    private Firing evaluate(Frame frame) {
+        for (RuleSet.Rule rule : frame.state.rules) {
+            RuleSet.Trigger trigger = rule.trigger;
+            switch (trigger.type) {
+                case TEXT: {
+                    RegionImage image = frame.findRegion(trigger.region);
+                    if (image == null || image.result == null) {
+                        break;
+                    }
+                    KeywordMatcher matcher = trigger.getMatcher();
+                    if (matcher.findAll(image.result.text).isEmpty()) {
+                        break;
+                    }
+                    int[] point = locateText(frame, image, matcher);
+                    return new Firing(frame, rule, point[0], point[1]);
+                }
+                case PIXEL: {
+                    Firing firing = matchProbes(frame, rule);
+                    if (firing != null) {
+                        return firing;
+                    }
+                    break;
+                }
+                case TEMPLATE: {
+                    RegionImage image = frame.findRegion(trigger.region);
+                    TemplateMatcher.Match match = image != null && image.templateMatches != null
+                        ? image.templateMatches.get(trigger) : null;
+                    if (match == null) {
+                        break;
+                    }
+                    if (match.score >= trigger.threshold) {
+                        int[] point = frame.mapping.toScreen(image.bounds[0] + match.centerX(),
+                            image.bounds[1] + match.centerY());
+                        return new Firing(frame, rule, point[0], point[1]);
+                    }
+                    // 得分模糊时由 OCR 按关键字复核
+                    if (match.score >= trigger.threshold - trigger.ambiguity && image.result != null
+                            && !trigger.keywords.isEmpty()) {
+                        KeywordMatcher matcher = trigger.getMatcher();
+                        if (!matcher.findAll(image.result.text).isEmpty()) {
+                            int[] point = locateText(frame, image, matcher);
+                            return new Firing(frame, rule, point[0], point[1]);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 定位关键字所在的屏幕坐标
+     * 优先使用所在行的中心，其次是所在文字块的中心，都找不到时使用区域中心
+     */
+    private static int[] locateText(Frame frame, RegionImage image, KeywordMatcher matcher) {
+        Rect rect = null;
+        for (OcrResult.Block block : image.result.blocks) {
+            for (OcrResult.Line line : block.lines) {
+                if (line.rect != null && !matcher.findAll(line.text).isEmpty()) {
+                    rect = line.rect;
+                    break;
+                }
+            }
+            if (rect == null && block.rect != null && !matcher.findAll(block.text).isEmpty()) {
+                rect = block.rect;
+            }
+            if (rect != null) {
+                break;
+            }
+        }
+        int[] bounds = image.bounds;
+        float x = rect != null ? bounds[0] + rect.exactCenterX() : (bounds[0] + bounds[2]) / 2f;
+        float y = rect != null ? bounds[1] + rect.exactCenterY() : (bounds[1] + bounds[3]) / 2f;
+        return frame.mapping.toScreen(x, y);
+    }
+
+    /**
+     * 按截图阶段读到的像素判定取色触发条件，点击位置为用于定位的取色点
+     */
+    private static Firing matchProbes(Frame frame, RuleSet.Rule rule) {
+        RuleSet.Trigger trigger = rule.trigger;
+        int index = PixelProbe.evaluate(frame.probeMatches, trigger.getProbeOffset(), trigger.probes.size(),
+            trigger.matchAll);
+        if (index < 0) {
+            return null;
+        }
+        PixelProbe probe = trigger.probes.get(index);
+        return new Firing(frame, rule, probe.x, probe.y);
+    }
+
+    /**
+     * 执行阶段：依次执行触发规则的动作
+     * 只有一个点击动作的规则持续触发时改为连续点击：由无障碍手势序列按点击间隔自行派发，
+     * 上一批完成的回调中立即派发下一批，之后的触发只用于确认条件仍然成立；
+     * 一段时间没有再次触发、其他规则触发或状态切换时停止序列。
+     * 其他规则或无法使用无障碍手势时逐次执行，距上次点击或滑动不足点击间隔的触发直接丢弃；
+     * 包含停止、切换状态的规则不能丢弃，等到间隔结束再执行。
+     */
+    private void runAct() {
+        while (running.get()) {
+            try {
+                Firing firing = repeatingRule != null
+                    ? actionQueue.poll(getRepeatHoldMs(), TimeUnit.MILLISECONDS)
+                    : actionQueue.take();
+                if (firing == null) {
+                    stopRepeating("触发条件已消失");
+                    continue;
+                }
+                if (!running.get() || firing.state != currentState) {
+                    stopRepeating("状态已切换");
+                    continue;
+                }
+                int[] target = getRepeatTarget(firing);
+                if (target != null && repeatingRule == firing.rule
+                        && repeatingX == target[0] && repeatingY == target[1]) {
+                    continue;
+                }
+                stopRepeating("规则'" + firing.rule.name + "'触发");
+                if (firing.rule.hasGesture()) {
+                    long remaining = nextGestureNanos - System.nanoTime();
+                    if (remaining > 0) {
+                        if (!firing.rule.isCritical()) {
+                            continue;
+                        }
+                        TimeUnit.NANOSECONDS.sleep(remaining);
+                        if (!running.get()) {
+                            continue;
+                        }
+                    }
+                }
+                if (target == null || !startRepeating(firing, target)) {
+                    execute(firing);
+                }
+                if (firing.rule.hasGesture()) {
+                    nextGestureNanos = System.nanoTime() + config.clickIntervalMs * 1000000L;
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "执行阶段异常", e);
+            }
+        }
+        stopRepeating("已停止");
+    }
+
+    /**
+     * 规则只有一个点击动作时返回点击位置，可以连续点击；否则返回 null
+     */
+    private static int[] getRepeatTarget(Firing firing) {
+        if (firing.rule.actions.size() != 1) {
+            return null;
+        }
+        RuleSet.Action action = firing.rule.actions.get(0);
+        switch (action.type) {
+            case TAP:
+                return new int[]{action.x, action.y};
+            case TAP_TEXT:
+                return new int[]{firing.x, firing.y};
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 开始连续点击，首选点击方式不是无障碍手势时返回 false
+     */
+    private boolean startRepeating(Firing firing, int[] target) {
+        long intervalMs = Math.max(config.clickIntervalMs, MyAccessibilityService.DEFAULT_TAP_DURATION_MS);
+        int maxBatch = (int) Math.max(1, REPEAT_BATCH_SPAN_MS / intervalMs);
+        long generation = repeatGeneration.incrementAndGet();
+        boolean started = TapDispatcher.getInstance().startRepeating(target[0], target[1], intervalMs, maxBatch,
+            new MyAccessibilityService.GestureListener() {
+                @Override
+                public void onCompleted(int taps) {
+                    onRepeatEnded(generation, taps);
+                }
+
+                @Override
+                public void onCancelled(int taps) {
+                    onRepeatEnded(generation, taps);
+                }
+            });
+        if (!started) {
+            return false;
+        }
+        repeatingRule = firing.rule;
+        repeatingX = target[0];
+        repeatingY = target[1];
+        recordEndToEnd(firing);
+        Log.d(TAG, "开始连续点击: (" + target[0] + ", " + target[1] + ")，间隔 " + intervalMs + "ms");
+        return true;
+    }
+
+    /**
+     * 手势序列结束（被取消或被系统打断）时回调，在手势线程中执行
+     */
+    private void onRepeatEnded(long generation, int taps) {
+        if (repeatGeneration.compareAndSet(generation, generation + 1)) {
+            repeatingRule = null;
+        }
+        Log.d(TAG, "连续点击结束，共点击 " + taps + " 次");
+    }
+
+    private void stopRepeating(String reason) {
+        if (repeatingRule == null) {
+            return;
+        }
+        repeatGeneration.incrementAndGet();
+        repeatingRule = null;
+        TapDispatcher.getInstance().stopRepeating();
+        Log.d(TAG, "停止连续点击: " + reason);
+    }
+
+    /**
+     * 连续点击期间等待再次触发的最长时间
+     */
+    private long getRepeatHoldMs() {
+        return Math.max(REPEAT_HOLD_MS, scheduler.getCurrentIntervalMs() * 3);
+    }
+
+    private void execute(Firing firing) throws InterruptedException {
+        for (RuleSet.Action action : firing.rule.actions) {
+            switch (action.type) {
+                case TAP:
+                    if (TapDispatcher.getInstance().tap(action.x, action.y)) {
+                        recordEndToEnd(firing);
+                        Log.d(TAG, "点击位置: (" + action.x + ", " + action.y + ")");
+                    }
+                    break;
+                case TAP_TEXT:
+                    if (TapDispatcher.getInstance().tap(firing.x, firing.y)) {
+                        recordEndToEnd(firing);
+                        Log.d(TAG, "点击文字位置: (" + firing.x + ", " + firing.y + ")");
+                    }
+                    break;
+                case SWIPE:
+                    ShizukuHelper.swipe(action.x, action.y, action.x2, action.y2, action.durationMs);
+                    break;
+                case WAIT:
+                    Thread.sleep(action.durationMs);
+                    break;
+                case STOP:
+                    Log.d(TAG, "规则 " + firing.rule.name + " 停止运行");
+                    stop("规则'" + firing.rule.name + "'触发停止");
+                    return;
+                case GOTO:
+                    RuleSet.State next = config.rules.getState(action.state);
+                    if (next != null) {
+                        Log.d(TAG, "状态切换: " + currentState.name + " → " + next.name);
+                        currentState = next;
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 记录首帧延迟：第一帧完成决策时统计从启动到此刻的耗时，包括截图和识别器尚未预热时的模型加载
+     */
+    private void recordFirstFrame() {
+        if (firstFrameRecorded.compareAndSet(false, true)) {
+            PipelineMetrics.record(PipelineMetrics.Stage.FIRST_FRAME, startNanos);
+            Log.d(TAG, "首帧耗时 " + (System.nanoTime() - startNanos) / 1000000 + "ms，识别器"
+                + (ocrHelper.isWarm() ? "已预热" : "未预热"));
+        }
+    }
+
+    /**
+     * 记录从开始截图到点击完成的端到端延迟
+     */
+    private static void recordEndToEnd(Firing firing) {
+        PipelineMetrics.record(PipelineMetrics.Stage.END_TO_END, firing.captureNanos);
+    }
+}
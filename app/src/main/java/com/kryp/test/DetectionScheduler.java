@@ -0,0 +1,142 @@
+package com.kryp.test;
+
+/**
+ * 检测间隔调度器
+ * 决定截图阶段何时开始下一次截图，支持三种方式：
+ * 固定延迟 —— 上一次截图完成后再等待一个间隔（旧版行为，实际周期 = 间隔 + 截图耗时）；
+ * 固定频率 —— 以截图开始时间为准计算截止时间，扣除处理耗时，处理超时则立即开始下一次且不补发；
+ * 自适应 —— 在固定频率的基础上动态调整间隔：规则触发时立即降到最小间隔，画面变化时间隔减半，
+ * 画面静止时逐步放大到最大间隔。
+ * 本类不依赖 Android API，所有方法线程安全。
+ */
+public class DetectionScheduler {
+    /**
+     * 调度方式
+     */
+    public enum Mode {
+        FIXED_DELAY,
+        FIXED_RATE,
+        ADAPTIVE
+    }
+
+    // 画面静止时每帧放大间隔的倍数
+    private static final double BACKOFF_FACTOR = 1.25;
+
+    private final Mode mode;
+    private final long intervalMs;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+
+    private long currentIntervalMs;
+    private long lastCaptureStart = -1;
+    private long deadline;
+    private long overrunCount;
+
+    /**
+     * @param mode 调度方式
+     * @param intervalMs 固定方式的间隔，也是自适应方式的初始间隔
+     * @param minIntervalMs 自适应方式的最小间隔
+     * @param maxIntervalMs 自适应方式的最大间隔
+     */
+    public DetectionScheduler(Mode mode, long intervalMs, long minIntervalMs, long maxIntervalMs) {
+        this.mode = mode;
+        this.minIntervalMs = Math.max(0, Math.min(minIntervalMs, maxIntervalMs));
+        this.maxIntervalMs = Math.max(minIntervalMs, maxIntervalMs);
+        this.intervalMs = intervalMs;
+        this.currentIntervalMs = mode == Mode.ADAPTIVE ? clamp(intervalMs) : intervalMs;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 当前生效的间隔
+     */
+    public synchronized long getCurrentIntervalMs() {
+        return currentIntervalMs;
+    }
+
+    /**
+     * 处理耗时超过间隔、未能按时开始的次数
+     */
+    public synchronized long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * 截图开始时调用
+     */
+    public synchronized void onCaptureStarted() {
+        lastCaptureStart = now();
+    }
+
+    /**
+     * 截图完成后调用，阻塞到下一次截图的时间
+     * 自适应方式下如果等待期间间隔缩短，会提前返回
+     */
+    public synchronized void awaitNextCapture() throws InterruptedException {
+        long now = now();
+        if (mode == Mode.FIXED_DELAY || lastCaptureStart < 0) {
+            deadline = now + currentIntervalMs;
+        } else {
+            deadline = lastCaptureStart + currentIntervalMs;
+            if (deadline < now) {
+                // 处理耗时超过间隔：立即开始，不补发错过的截图
+                overrunCount++;
+                deadline = now;
+            }
+        }
+        long remaining;
+        while ((remaining = deadline - now()) > 0) {
+            wait(remaining);
+        }
+    }
+
+    /**
+     * 反馈一帧的处理结果，仅自适应方式会调整间隔
+     * @param changed 监视区域是否发生变化
+     * @param triggered 是否有规则触发
+     */
+    public synchronized void onFrameResult(boolean changed, boolean triggered) {
+        if (mode != Mode.ADAPTIVE) {
+            return;
+        }
+        long previous = currentIntervalMs;
+        if (triggered) {
+            currentIntervalMs = minIntervalMs;
+        } else if (changed) {
+            currentIntervalMs = clamp(currentIntervalMs / 2);
+        } else {
+            currentIntervalMs = clamp(Math.max(currentIntervalMs + 1,
+                (long) Math.ceil(currentIntervalMs * BACKOFF_FACTOR)));
+        }
+        if (currentIntervalMs < previous && lastCaptureStart >= 0) {
+            // 间隔缩短时提前唤醒正在等待的截图线程
+            deadline = Math.min(deadline, lastCaptureStart + currentIntervalMs);
+            notifyAll();
+        }
+    }
+
+    private long clamp(long value) {
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, value));
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        switch (mode) {
+            case FIXED_RATE:
+                return "固定频率 " + intervalMs + "ms，超时 " + overrunCount + " 次";
+            case ADAPTIVE:
+                return "自适应 " + minIntervalMs + "-" + maxIntervalMs + "ms，当前 " + currentIntervalMs
+                    + "ms，超时 " + overrunCount + " 次";
+            case FIXED_DELAY:
+            default:
+                return "固定延迟 " + intervalMs + "ms";
+        }
+    }
+}
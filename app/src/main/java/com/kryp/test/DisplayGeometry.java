@@ -0,0 +1,238 @@
+package com.kryp.test;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Display;
+import android.view.DisplayCutout;
+
+/**
+ * 屏幕几何信息
+ * 从 DisplayManager 读取默认屏幕的实际尺寸、方向和挖孔安全区并缓存，
+ * 屏幕变化（旋转、分辨率、折叠）回调时作废缓存，下一次读取时重新获取，检测循环中不再调用 wm size。
+ * 同时负责截图坐标与屏幕坐标（点击注入坐标）之间的换算：截图可能被缩小，换算按各轴实际比例进行。
+ */
+public class DisplayGeometry {
+    private static final String TAG = "DisplayGeometry";
+
+    /**
+     * 某一时刻的屏幕信息，坐标均为当前方向下的逻辑像素
+     */
+    public static class Snapshot {
+        public final int width;
+        public final int height;
+        public final int densityDpi;
+        // Surface.ROTATION_0 - ROTATION_270
+        public final int rotation;
+        // 挖孔/刘海安全区边距，没有时为 0
+        public final Rect safeInsets;
+
+        Snapshot(int width, int height, int densityDpi, int rotation, Rect safeInsets) {
+            this.width = width;
+            this.height = height;
+            this.densityDpi = densityDpi;
+            this.rotation = rotation;
+            this.safeInsets = safeInsets;
+        }
+
+        public boolean isLandscape() {
+            return width > height;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + " " + densityDpi + "dpi 旋转" + rotation * 90
+                + (safeInsets.isEmpty() && safeInsets.left == 0 && safeInsets.top == 0 ? "" : " 安全区" + safeInsets);
+        }
+    }
+
+    /**
+     * 一帧截图与屏幕之间的坐标换算
+     * 截图可能按比例缩小（屏幕录制方式），像素区域、取色点和 OCR 文字框都要经过换算
+     */
+    public static class Mapping {
+        public final int screenWidth;
+        public final int screenHeight;
+        public final int captureWidth;
+        public final int captureHeight;
+        // 截图坐标 / 屏幕坐标
+        private final float scaleX;
+        private final float scaleY;
+
+        public Mapping(int screenWidth, int screenHeight, int captureWidth, int captureHeight) {
+            this.screenWidth = screenWidth;
+            this.screenHeight = screenHeight;
+            this.captureWidth = captureWidth;
+            this.captureHeight = captureHeight;
+            this.scaleX = (float) captureWidth / screenWidth;
+            this.scaleY = (float) captureHeight / screenHeight;
+        }
+
+        /**
+         * 截图坐标与屏幕坐标之比（横向）
+         */
+        public float getScaleX() {
+            return scaleX;
+        }
+
+        public boolean isIdentity() {
+            return captureWidth == screenWidth && captureHeight == screenHeight;
+        }
+
+        /**
+         * 屏幕坐标的区域换算到截图坐标，比例区域保持不变
+         */
+        public FrameRegion toCapture(FrameRegion region) {
+            return isIdentity() ? region : region.scale(scaleX, scaleY);
+        }
+
+        /**
+         * 屏幕上的点换算到截图坐标
+         */
+        public int[] toCapture(int screenX, int screenY) {
+            return new int[]{
+                clamp(Math.round(screenX * scaleX), captureWidth),
+                clamp(Math.round(screenY * scaleY), captureHeight)
+            };
+        }
+
+        /**
+         * 截图上的点换算到屏幕坐标，可直接用于点击
+         */
+        public int[] toScreen(float captureX, float captureY) {
+            return new int[]{
+                clamp(Math.round(captureX / scaleX), screenWidth),
+                clamp(Math.round(captureY / scaleY), screenHeight)
+            };
+        }
+
+        private static int clamp(int value, int size) {
+            return Math.max(0, Math.min(size - 1, value));
+        }
+
+        @Override
+        public String toString() {
+            return captureWidth + "x" + captureHeight + " → " + screenWidth + "x" + screenHeight;
+        }
+    }
+
+    private static DisplayGeometry instance;
+
+    private DisplayManager displayManager;
+    private volatile Snapshot snapshot;
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            if (displayId == Display.DEFAULT_DISPLAY) {
+                snapshot = null;
+            }
+        }
+    };
+
+    /**
+     * 获取全局实例
+     */
+    public static synchronized DisplayGeometry getInstance() {
+        if (instance == null) {
+            instance = new DisplayGeometry();
+        }
+        return instance;
+    }
+
+    /**
+     * 初始化并监听屏幕变化，重复调用无副作用
+     */
+    public synchronized void init(Context context) {
+        if (displayManager != null) {
+            return;
+        }
+        displayManager = (DisplayManager) context.getApplicationContext().getSystemService(Context.DISPLAY_SERVICE);
+        displayManager.registerDisplayListener(displayListener, new Handler(Looper.getMainLooper()));
+        Log.d(TAG, "屏幕: " + get());
+    }
+
+    /**
+     * 当前屏幕信息
+     * @return 未初始化时返回 null
+     */
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null && displayManager != null) {
+                snapshot = load();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 根据截图实际尺寸建立坐标换算
+     * @return 未初始化，或截图方向与当前屏幕方向不一致（截图后发生了旋转）时返回 null
+     */
+    public Mapping mapping(int captureWidth, int captureHeight) {
+        Snapshot current = get();
+        if (current == null || captureWidth <= 0 || captureHeight <= 0) {
+            return null;
+        }
+        if (captureWidth != captureHeight && current.width != current.height
+                && (captureWidth > captureHeight) != current.isLandscape()) {
+            return null;
+        }
+        return new Mapping(current.width, current.height, captureWidth, captureHeight);
+    }
+
+    /**
+     * 截图前预估的坐标换算，用于确定需要截取的区域
+     * @return 未初始化时返回不做换算的映射
+     */
+    public Mapping expectedMapping(ScreenshotHelper.ScreenshotMode mode) {
+        Snapshot current = get();
+        if (current == null) {
+            return new Mapping(1, 1, 1, 1);
+        }
+        if (mode == ScreenshotHelper.ScreenshotMode.PROJECTION) {
+            int[] size = ProjectionCapture.getInstance().getFrameSize();
+            Mapping mapping = size != null ? mapping(size[0], size[1]) : null;
+            if (mapping != null) {
+                return mapping;
+            }
+        }
+        return new Mapping(current.width, current.height, current.width, current.height);
+    }
+
+    private Snapshot load() {
+        Display display = displayManager.getDisplay(Display.DEFAULT_DISPLAY);
+        if (display == null) {
+            return null;
+        }
+        DisplayMetrics metrics = new DisplayMetrics();
+        display.getRealMetrics(metrics);
+        Rect insets = new Rect();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            DisplayCutout cutout = display.getCutout();
+            if (cutout != null) {
+                insets.set(cutout.getSafeInsetLeft(), cutout.getSafeInsetTop(),
+                    cutout.getSafeInsetRight(), cutout.getSafeInsetBottom());
+            }
+        }
+        return new Snapshot(metrics.widthPixels, metrics.heightPixels, metrics.densityDpi,
+            display.getRotation(), insets);
+    }
+}
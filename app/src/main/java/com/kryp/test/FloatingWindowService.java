@@ -4,7 +4,9 @@ import android.app.Service;
 import android.content.Intent;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -14,12 +16,22 @@ import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.IOException;
+
 /**
  * 悬浮窗服务
- * 提供用户交互界面，用于设置点击位置和控制自动识别
+ * 提供用户交互界面，用于设置点击位置和控制自动识别；
+ * 运行中的检测流水线也由本服务持有，不随 Activity 销毁而停止
  */
 public class FloatingWindowService extends Service {
     private static final String TAG = "FloatingWindowService";
+    // 延迟统计刷新间隔
+    private static final long METRICS_REFRESH_MS = 1000;
+    // 选择层的半透明底色
+    private static final int SELECTION_LAYER_COLOR = 0x33000000;
+    // 移除选择层后等它从画面上消失再截图
+    private static final long SELECTION_LAYER_REMOVE_DELAY_MS = 100;
     
     private WindowManager windowManager;
     private View floatingView;
@@ -28,22 +40,61 @@ public class FloatingWindowService extends Service {
     private Button startButton;
     private Button stopButton;
     private Button selectPosButton;
+    private Button calibrateButton;
+    private TextView titleText;
+    private TextView metricsText;
+    private Button exportMetricsButton;
+    private Button recordFrameButton;
+    private Button calibrateOcrButton;
+    private Button captureTemplateButton;
+    private Button pickColorButton;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable metricsRefresher = new Runnable() {
+        @Override
+        public void run() {
+            if (metricsText != null) {
+                metricsText.setText(PipelineMetrics.getShortSummary());
+            }
+            mainHandler.postDelayed(this, METRICS_REFRESH_MS);
+        }
+    };
     
     private int targetX = -1;
     private int targetY = -1;
     private boolean isSelectingPosition = false;
+    // 选择模板区域、取色时覆盖全屏的半透明触摸层，悬浮窗只有自身大小，收不到外面的点击
+    private View selectionLayer;
+    // 模板截取：依次点击模板区域的两个对角，已点击第一个角时记录其坐标
+    private int templateCornerX = -1;
+    private int templateCornerY = -1;
     private OnFloatingWindowListener listener;
+    // 当前运行的检测流水线，由悬浮窗服务持有：Activity 销毁后继续运行，服务停止时一并停止
+    private static DetectionPipeline pipeline;
+
+    /**
+     * 选择层上的点击处理，返回 true 表示选择完成，移除选择层
+     */
+    private interface SelectionHandler {
+        boolean onPoint(int x, int y);
+    }
     
     public interface OnFloatingWindowListener {
         void onStartAutoClick();
         void onStopAutoClick();
         void onPositionSelected(int x, int y);
+        void onCalibrate(int safeX, int safeY);
+        void onRecordFrame();
+        void onCalibrateOcr();
+        void onTemplateSelected(int left, int top, int right, int bottom);
+        void onColorPicked(int x, int y);
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "悬浮窗服务已创建");
+        DisplayGeometry.getInstance().init(this);
+        OcrHelper.getInstance().warmUp();
         createFloatingWindow();
     }
 
@@ -60,6 +111,11 @@ public class FloatingWindowService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        mainHandler.removeCallbacks(metricsRefresher);
+        removeSelectionLayer();
+        if (stopPipeline()) {
+            SharedFrameClient.getInstance().unbind();
+        }
         if (windowManager != null && floatingView != null) {
             windowManager.removeView(floatingView);
         }
@@ -106,11 +162,20 @@ public class FloatingWindowService extends Service {
         startButton = floatingView.findViewById(R.id.btn_start);
         stopButton = floatingView.findViewById(R.id.btn_stop);
         selectPosButton = floatingView.findViewById(R.id.btn_select_pos);
+        calibrateButton = floatingView.findViewById(R.id.btn_calibrate);
+        titleText = floatingView.findViewById(R.id.tv_title);
+        metricsText = floatingView.findViewById(R.id.tv_metrics);
+        exportMetricsButton = floatingView.findViewById(R.id.btn_export_metrics);
+        recordFrameButton = floatingView.findViewById(R.id.btn_record_frame);
+        calibrateOcrButton = floatingView.findViewById(R.id.btn_calibrate_ocr);
+        captureTemplateButton = floatingView.findViewById(R.id.btn_capture_template);
+        pickColorButton = floatingView.findViewById(R.id.btn_pick_color);
         
         // 初始状态
         updateStatus("等待开始");
         updateCoordinate("未设置");
         stopButton.setEnabled(false);
+        mainHandler.post(metricsRefresher);
         
         // 开始按钮点击事件
         startButton.setOnClickListener(v -> {
@@ -146,6 +211,92 @@ public class FloatingWindowService extends Service {
             updateStatus("请点击屏幕选择位置");
         });
         
+        // 校准按钮点击事件：以悬浮窗标题中心作为无害的点击位置
+        calibrateButton.setOnClickListener(v -> {
+            int[] location = new int[2];
+            titleText.getLocationOnScreen(location);
+            int safeX = location[0] + titleText.getWidth() / 2;
+            int safeY = location[1] + titleText.getHeight() / 2;
+            updateStatus("正在校准点击方式");
+            
+            if (listener != null) {
+                listener.onCalibrate(safeX, safeY);
+            }
+        });
+        
+        // 录制帧按钮点击事件：保存当前画面供 OCR 校准使用
+        recordFrameButton.setOnClickListener(v -> {
+            updateStatus("正在录制帧");
+            if (listener != null) {
+                listener.onRecordFrame();
+            }
+        });
+        
+        // OCR 校准按钮点击事件：在录制的帧上比较各缩放比例
+        calibrateOcrButton.setOnClickListener(v -> {
+            updateStatus("正在校准 OCR 缩放比例");
+            if (listener != null) {
+                listener.onCalibrateOcr();
+            }
+        });
+        
+        // 截取模板按钮点击事件：依次点击模板区域的左上角和右下角
+        captureTemplateButton.setOnClickListener(v -> {
+            isSelectingPosition = false;
+            templateCornerX = -1;
+            templateCornerY = -1;
+            updateStatus("请点击模板区域的第一个角");
+            showSelectionLayer((x, y) -> {
+                if (templateCornerX < 0) {
+                    templateCornerX = x;
+                    templateCornerY = y;
+                    updateStatus("请点击模板区域的另一个角");
+                    return false;
+                }
+                int left = Math.min(templateCornerX, x);
+                int top = Math.min(templateCornerY, y);
+                int right = Math.max(templateCornerX, x);
+                int bottom = Math.max(templateCornerY, y);
+                updateStatus("正在截取模板");
+                mainHandler.postDelayed(() -> {
+                    if (listener != null) {
+                        listener.onTemplateSelected(left, top, right, bottom);
+                    }
+                }, SELECTION_LAYER_REMOVE_DELAY_MS);
+                return true;
+            });
+        });
+        
+        // 取色按钮点击事件：点击屏幕上的一点，读取颜色生成取色点
+        pickColorButton.setOnClickListener(v -> {
+            isSelectingPosition = false;
+            updateStatus("请点击要取色的位置");
+            showSelectionLayer((x, y) -> {
+                updateStatus("正在取色");
+                mainHandler.postDelayed(() -> {
+                    if (listener != null) {
+                        listener.onColorPicked(x, y);
+                    }
+                }, SELECTION_LAYER_REMOVE_DELAY_MS);
+                return true;
+            });
+        });
+        
+        // 导出统计按钮点击事件：写入应用外部文件目录
+        exportMetricsButton.setOnClickListener(v -> {
+            File dir = getExternalFilesDir(null);
+            if (dir == null) {
+                dir = getFilesDir();
+            }
+            try {
+                File file = PipelineMetrics.export(dir);
+                updateStatus("统计已导出到 " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.e(TAG, "导出统计失败", e);
+                updateStatus("导出统计失败");
+            }
+        });
+        
         // 整个悬浮窗点击事件（用于选择位置）
         floatingView.setOnTouchListener(new View.OnTouchListener() {
             private int initialX;
@@ -198,6 +349,42 @@ public class FloatingWindowService extends Service {
 
     private WindowManager.LayoutParams params;
 
+    /**
+     * 显示覆盖全屏的半透明选择层，屏幕上任意位置的点击都交给 handler，坐标为屏幕坐标
+     */
+    private void showSelectionLayer(SelectionHandler handler) {
+        removeSelectionLayer();
+        View layer = new View(this);
+        layer.setBackgroundColor(SELECTION_LAYER_COLOR);
+        layer.setOnTouchListener((v, event) -> {
+            if (event.getAction() == MotionEvent.ACTION_DOWN
+                    && handler.onPoint((int) event.getRawX(), (int) event.getRawY())) {
+                removeSelectionLayer();
+            }
+            return true;
+        });
+        WindowManager.LayoutParams layerParams = new WindowManager.LayoutParams(
+            WindowManager.LayoutParams.MATCH_PARENT,
+            WindowManager.LayoutParams.MATCH_PARENT,
+            WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+            WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN,
+            PixelFormat.TRANSLUCENT
+        );
+        layerParams.gravity = Gravity.TOP | Gravity.LEFT;
+        windowManager.addView(layer, layerParams);
+        selectionLayer = layer;
+    }
+
+    /**
+     * 移除选择层
+     */
+    private void removeSelectionLayer() {
+        if (windowManager != null && selectionLayer != null) {
+            windowManager.removeView(selectionLayer);
+            selectionLayer = null;
+        }
+    }
+
     /**
      * 设置悬浮窗可拖拽
      */
@@ -205,6 +392,36 @@ public class FloatingWindowService extends Service {
         this.params = layoutParams;
     }
 
+    /**
+     * 交由服务持有新启动的检测流水线，之前的流水线会被停止
+     */
+    public static synchronized void setPipeline(DetectionPipeline newPipeline) {
+        if (pipeline != null && pipeline != newPipeline) {
+            pipeline.stop();
+        }
+        pipeline = newPipeline;
+    }
+
+    /**
+     * 当前持有的检测流水线，没有时返回 null
+     */
+    public static synchronized DetectionPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * 停止并释放持有的检测流水线
+     * @return 之前持有流水线时返回 true
+     */
+    public static synchronized boolean stopPipeline() {
+        if (pipeline == null) {
+            return false;
+        }
+        pipeline.stop();
+        pipeline = null;
+        return true;
+    }
+
     /**
      * 更新状态显示
      */
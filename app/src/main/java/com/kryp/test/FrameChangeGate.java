@@ -0,0 +1,128 @@
+package com.kryp.test;
+
+import java.util.Arrays;
+
+/**
+ * 画面变化检测
+ * 将区域划分为固定数量的网格，每格取采样像素的平均亮度作为签名。
+ * 与上一次判定为变化时的签名相比，任意一格的亮度差超过阈值才认为画面发生了变化，未变化的帧可以跳过 OCR。
+ * 本类不依赖 Android API，不是线程安全的。
+ */
+public class FrameChangeGate {
+    public static final int DEFAULT_THRESHOLD = 6;
+
+    private static final int GRID_COLUMNS = 32;
+    private static final int GRID_ROWS = 16;
+    // 每隔多少像素采样一次
+    private static final int SAMPLE_STEP = 2;
+
+    private final int[] signature = new int[GRID_COLUMNS * GRID_ROWS];
+    private final int[] previous = new int[GRID_COLUMNS * GRID_ROWS];
+    private final int[] sampleCounts = new int[GRID_COLUMNS * GRID_ROWS];
+
+    private int threshold;
+    private boolean hasPrevious;
+    private int previousWidth;
+    private int previousHeight;
+
+    private long checkedCount;
+    private long skippedCount;
+
+    /**
+     * @param threshold 单格平均亮度差阈值 (0 - 255)，0 表示不跳过任何帧
+     */
+    public FrameChangeGate(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 判断区域相对上一次是否发生变化，并记录本次签名
+     * @param pixels ARGB 像素，按行存放
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @return 画面发生变化（或尚无可比较的上一帧）时返回 true
+     */
+    public boolean hasChanged(int[] pixels, int width, int height) {
+        checkedCount++;
+        computeSignature(pixels, width, height);
+
+        boolean changed = true;
+        if (threshold > 0 && hasPrevious && width == previousWidth && height == previousHeight) {
+            changed = maxDifference() > threshold;
+        }
+
+        if (changed) {
+            // 参照签名只在判定变化时更新，避免缓慢渐变逐帧累积而始终不触发
+            System.arraycopy(signature, 0, previous, 0, signature.length);
+            hasPrevious = true;
+            previousWidth = width;
+            previousHeight = height;
+        } else {
+            skippedCount++;
+        }
+        return changed;
+    }
+
+    /**
+     * 丢弃上一次签名，下一帧必定视为已变化
+     */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    public long getCheckedCount() {
+        return checkedCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * 被判定为未变化而跳过的帧占比
+     */
+    public float getSkipRatio() {
+        return checkedCount == 0 ? 0f : (float) skippedCount / checkedCount;
+    }
+
+    private void computeSignature(int[] pixels, int width, int height) {
+        Arrays.fill(signature, 0);
+        Arrays.fill(sampleCounts, 0);
+        for (int y = 0; y < height; y += SAMPLE_STEP) {
+            int rowBase = (y * GRID_ROWS / height) * GRID_COLUMNS;
+            int offset = y * width;
+            for (int x = 0; x < width; x += SAMPLE_STEP) {
+                int c = pixels[offset + x];
+                // 整数近似亮度：(R*77 + G*150 + B*29) / 256
+                int luma = (((c >> 16) & 0xFF) * 77 + ((c >> 8) & 0xFF) * 150 + (c & 0xFF) * 29) >> 8;
+                int cell = rowBase + x * GRID_COLUMNS / width;
+                signature[cell] += luma;
+                sampleCounts[cell]++;
+            }
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (sampleCounts[i] > 0) {
+                signature[i] /= sampleCounts[i];
+            }
+        }
+    }
+
+    private int maxDifference() {
+        int max = 0;
+        for (int i = 0; i < signature.length; i++) {
+            int diff = Math.abs(signature[i] - previous[i]);
+            if (diff > max) {
+                max = diff;
+            }
+        }
+        return max;
+    }
+}
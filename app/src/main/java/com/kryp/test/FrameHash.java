@@ -0,0 +1,44 @@
+package com.kryp.test;
+
+/**
+ * 像素内容哈希
+ * 对区域内全部像素计算 64 位哈希，用作 OCR 结果缓存等的键。
+ * 本类不依赖 Android API。
+ */
+public final class FrameHash {
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private FrameHash() {
+    }
+
+    /**
+     * 计算像素哈希
+     * @param pixels ARGB 像素，按行存放
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @return 64 位哈希值
+     */
+    public static long hash64(int[] pixels, int width, int height) {
+        long h = FNV_OFFSET;
+        h = (h ^ width) * FNV_PRIME;
+        h = (h ^ height) * FNV_PRIME;
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            h = (h ^ pixels[i]) * FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * 最终混合，使低位也充分受到全部输入的影响
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,128 @@
+package com.kryp.test;
+
+/**
+ * 帧区域
+ * 可以用像素坐标或相对比例描述，在得知帧尺寸后再解析为具体的像素矩形
+ */
+public class FrameRegion {
+    private final boolean relative;
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    private FrameRegion(boolean relative, float left, float top, float right, float bottom) {
+        this.relative = relative;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /**
+     * 以像素坐标创建区域（右、下边界不包含）
+     */
+    public static FrameRegion ofPixels(int left, int top, int right, int bottom) {
+        return new FrameRegion(false, left, top, right, bottom);
+    }
+
+    /**
+     * 以相对比例创建区域，取值范围 0.0 - 1.0
+     */
+    public static FrameRegion ofRatio(float left, float top, float right, float bottom) {
+        return new FrameRegion(true, left, top, right, bottom);
+    }
+
+    /**
+     * 顶部区域，与 ScreenshotHelper.cropTopLeft 的裁剪范围一致
+     */
+    public static FrameRegion topRatio(float heightRatio) {
+        return ofRatio(0f, 0f, 1f, heightRatio);
+    }
+
+    /**
+     * 同时覆盖两个区域的最小区域
+     * @return 两个区域单位不同（像素与比例混用）时返回 null
+     */
+    public FrameRegion union(FrameRegion other) {
+        if (other.relative != relative) {
+            return null;
+        }
+        return new FrameRegion(relative, Math.min(left, other.left), Math.min(top, other.top),
+            Math.max(right, other.right), Math.max(bottom, other.bottom));
+    }
+
+    /**
+     * 按比例缩放像素区域，用于把屏幕坐标换算到缩小后的截图坐标；比例区域保持不变
+     */
+    public FrameRegion scale(float factor) {
+        return scale(factor, factor);
+    }
+
+    /**
+     * 按横纵两个方向各自的比例缩放像素区域；比例区域保持不变
+     */
+    public FrameRegion scale(float factorX, float factorY) {
+        if (relative || (factorX == 1f && factorY == 1f)) {
+            return this;
+        }
+        return new FrameRegion(false, left * factorX, top * factorY, right * factorX, bottom * factorY);
+    }
+
+    public boolean isRelative() {
+        return relative;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getRight() {
+        return right;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    /**
+     * 根据帧尺寸解析为像素矩形，并裁剪到帧范围内
+     * @param frameWidth 帧宽度
+     * @param frameHeight 帧高度
+     * @return {left, top, right, bottom}，区域为空时返回 null
+     */
+    public int[] resolve(int frameWidth, int frameHeight) {
+        int l;
+        int t;
+        int r;
+        int b;
+        if (relative) {
+            l = (int) (frameWidth * left);
+            t = (int) (frameHeight * top);
+            r = (int) (frameWidth * right);
+            b = (int) (frameHeight * bottom);
+        } else {
+            l = (int) left;
+            t = (int) top;
+            r = (int) right;
+            b = (int) bottom;
+        }
+        l = Math.max(0, l);
+        t = Math.max(0, t);
+        r = Math.min(frameWidth, r);
+        b = Math.min(frameHeight, b);
+        if (r <= l || b <= t) {
+            return null;
+        }
+        return new int[]{l, t, r, b};
+    }
+
+    @Override
+    public String toString() {
+        return (relative ? "ratio" : "px") + "[" + left + ", " + top + ", " + right + ", " + bottom + "]";
+    }
+}
@@ -0,0 +1,123 @@
+package com.kryp.test;
+
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.InputDevice;
+import android.view.InputEvent;
+import android.view.MotionEvent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import moe.shizuku.api.ShizukuBinderWrapper;
+import moe.shizuku.api.SystemServiceHelper;
+
+/**
+ * 输入事件注入
+ * 通过 Shizuku 包装的 input 系统服务 Binder 直接调用 IInputManager.injectInputEvent()，
+ * 点击时注入一对带精确时间戳的 MotionEvent（按下/抬起），不再为每次点击启动 input 命令的 app_process 虚拟机。
+ * 服务获取失败时 isAvailable() 返回 false，调用方应退回 Shell 命令。
+ */
+public class InputInjector {
+    private static final String TAG = "InputInjector";
+
+    // InputManager.INJECT_INPUT_EVENT_MODE_*
+    private static final int INJECT_MODE_ASYNC = 0;
+    private static final int INJECT_MODE_WAIT_FOR_RESULT = 1;
+
+    private static Object inputManager;
+    private static Method injectMethod;
+    // 初始化失败后不再重复尝试，直到 reset()
+    private static boolean unavailable;
+
+    /**
+     * 注入服务是否可用，首次调用时初始化
+     */
+    public static synchronized boolean isAvailable() {
+        if (injectMethod != null) {
+            return true;
+        }
+        if (unavailable) {
+            return false;
+        }
+        try {
+            IBinder binder = new ShizukuBinderWrapper(SystemServiceHelper.getSystemService("input"));
+            Class<?> stubClass = Class.forName("android.hardware.input.IInputManager$Stub");
+            inputManager = stubClass.getMethod("asInterface", IBinder.class).invoke(null, binder);
+            injectMethod = inputManager.getClass().getMethod("injectInputEvent", InputEvent.class, int.class);
+            Log.d(TAG, "输入注入服务已就绪");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "获取输入注入服务失败", e);
+            inputManager = null;
+            injectMethod = null;
+            unavailable = true;
+            return false;
+        }
+    }
+
+    /**
+     * 丢弃已获取的服务，下次使用时重新获取（Shizuku Binder 断开后调用）
+     */
+    public static synchronized void reset() {
+        inputManager = null;
+        injectMethod = null;
+        unavailable = false;
+    }
+
+    /**
+     * 在屏幕坐标处点击
+     * 按下事件异步注入，抬起事件等待分发结果，两者共用同一个按下时间
+     * @return 注入成功返回 true，服务不可用或注入失败返回 false
+     */
+    public static boolean tap(int x, int y) {
+        if (!isAvailable()) {
+            return false;
+        }
+        long downTime = SystemClock.uptimeMillis();
+        MotionEvent down = obtain(downTime, downTime, MotionEvent.ACTION_DOWN, x, y);
+        MotionEvent up = null;
+        try {
+            if (!inject(down, INJECT_MODE_ASYNC)) {
+                return false;
+            }
+            up = obtain(downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_UP, x, y);
+            return inject(up, INJECT_MODE_WAIT_FOR_RESULT);
+        } finally {
+            down.recycle();
+            if (up != null) {
+                up.recycle();
+            }
+        }
+    }
+
+    private static MotionEvent obtain(long downTime, long eventTime, int action, int x, int y) {
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        event.setSource(InputDevice.SOURCE_TOUCHSCREEN);
+        return event;
+    }
+
+    private static boolean inject(InputEvent event, int mode) {
+        Object manager;
+        Method method;
+        synchronized (InputInjector.class) {
+            manager = inputManager;
+            method = injectMethod;
+        }
+        if (method == null) {
+            return false;
+        }
+        try {
+            return (Boolean) method.invoke(manager, event, mode);
+        } catch (InvocationTargetException e) {
+            // 多为 Binder 已断开，重新获取服务后再试
+            Log.e(TAG, "注入输入事件失败", e.getCause());
+            reset();
+            return false;
+        } catch (Exception e) {
+            Log.e(TAG, "注入输入事件失败", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.kryp.test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多关键字匹配器
+ * 按配置构建一次 Aho–Corasick 自动机，之后对 OCR 文本只扫描一遍即可找出全部关键字。
+ * 匹配前对文本和关键字做相同的归一化：忽略空白和换行、全角转半角、英文转小写，
+ * 并把常见的 OCR 易混字符映射到同一个字符。
+ * 构建完成后只读，可以在多个线程中同时使用。本类不依赖 Android API。
+ */
+public class KeywordMatcher {
+    /**
+     * 默认的 OCR 易混字符映射（左侧字符视为右侧字符）
+     */
+    public static final Map<Character, Character> DEFAULT_CONFUSIONS;
+
+    static {
+        Map<Character, Character> map = new HashMap<>();
+        map.put('o', '0');
+        map.put('〇', '0');
+        map.put('l', '1');
+        map.put('i', '1');
+        map.put('|', '1');
+        map.put('白', '自');
+        map.put('劫', '动');
+        map.put('迸', '进');
+        map.put('忄', '中');
+        DEFAULT_CONFUSIONS = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 匹配结果
+     */
+    public static class Match {
+        // 关键字在配置列表中的下标
+        public final int keywordIndex;
+        public final String keyword;
+        // 在原始文本中的起止位置（end 不包含）
+        public final int start;
+        public final int end;
+
+        Match(int keywordIndex, String keyword, int start, int end) {
+            this.keywordIndex = keywordIndex;
+            this.keyword = keyword;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return keyword + "@" + start + "-" + end;
+        }
+    }
+
+    private final List<String> keywords;
+    private final int[] keywordLengths;
+    private final Map<Character, Character> confusions;
+
+    // 自动机：每个节点的子节点字符（有序）和对应节点
+    private final char[][] childChars;
+    private final int[][] childNodes;
+    private final int[] fail;
+    // 以该节点结尾的关键字下标
+    private final int[][] outputs;
+    // 沿失败链最近一个有输出的节点，-1 表示没有
+    private final int[] outputLink;
+
+    public KeywordMatcher(List<String> keywords) {
+        this(keywords, DEFAULT_CONFUSIONS);
+    }
+
+    /**
+     * @param keywords 关键字列表
+     * @param confusions 易混字符映射，可为空
+     */
+    public KeywordMatcher(List<String> keywords, Map<Character, Character> confusions) {
+        this.keywords = new ArrayList<>(keywords);
+        this.confusions = confusions != null ? confusions : Collections.emptyMap();
+        this.keywordLengths = new int[keywords.size()];
+
+        // 构建字典树
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            int node = 0;
+            int length = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = normalize(keyword.charAt(i));
+                if (c == 0) {
+                    continue;
+                }
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                    children.get(node).put(c, next);
+                }
+                node = next;
+                length++;
+            }
+            keywordLengths[k] = length;
+            if (length > 0) {
+                nodeOutputs.get(node).add(k);
+            }
+        }
+
+        int count = children.size();
+        childChars = new char[count][];
+        childNodes = new int[count][];
+        outputs = new int[count][];
+        for (int n = 0; n < count; n++) {
+            TreeMap<Character, Integer> map = children.get(n);
+            childChars[n] = new char[map.size()];
+            childNodes[n] = new int[map.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : map.entrySet()) {
+                childChars[n][i] = entry.getKey();
+                childNodes[n][i] = entry.getValue();
+                i++;
+            }
+            List<Integer> out = nodeOutputs.get(n);
+            outputs[n] = new int[out.size()];
+            for (int j = 0; j < out.size(); j++) {
+                outputs[n][j] = out.get(j);
+            }
+        }
+
+        // 按层序计算失败链
+        fail = new int[count];
+        outputLink = new int[count];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : childNodes[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < childChars[node].length; i++) {
+                char c = childChars[node][i];
+                int child = childNodes[node][i];
+                int f = fail[node];
+                int next;
+                while ((next = step(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next >= 0 ? next : 0;
+                int target = fail[child];
+                outputLink[child] = outputs[target].length > 0 ? target : outputLink[target];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 关键字数量
+     */
+    public int size() {
+        return keywords.size();
+    }
+
+    /**
+     * 找出文本中全部关键字出现的位置
+     * @param text OCR 文本
+     * @return 按结束位置排序的匹配列表
+     */
+    public List<Match> findAll(String text) {
+        List<Match> matches = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return matches;
+        }
+        // 归一化后第 n 个字符对应的原始下标
+        int[] origin = new int[text.length()];
+        int normalizedLength = 0;
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = normalize(text.charAt(i));
+            if (c == 0) {
+                continue;
+            }
+            origin[normalizedLength++] = i;
+
+            int next;
+            while ((next = step(node, c)) < 0 && node != 0) {
+                node = fail[node];
+            }
+            node = next >= 0 ? next : 0;
+
+            for (int out = outputs[node].length > 0 ? node : outputLink[node]; out >= 0; out = outputLink[out]) {
+                for (int k : outputs[out]) {
+                    int startIndex = origin[normalizedLength - keywordLengths[k]];
+                    matches.add(new Match(k, keywords.get(k), startIndex, i + 1));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 返回文本中出现过的关键字
+     * @param text OCR 文本
+     * @return 与关键字列表一一对应的标记数组
+     */
+    public boolean[] findMatched(String text) {
+        boolean[] matched = new boolean[keywords.size()];
+        for (Match match : findAll(text)) {
+            matched[match.keywordIndex] = true;
+        }
+        return matched;
+    }
+
+    /**
+     * 字符归一化，返回 0 表示忽略该字符
+     */
+    private char normalize(char c) {
+        if (Character.isWhitespace(c) || c == '　') {
+            return 0;
+        }
+        if (c >= '！' && c <= '～') {
+            // 全角 ASCII 转半角
+            c = (char) (c - 0xFEE0);
+        }
+        c = Character.toLowerCase(c);
+        Character mapped = confusions.get(c);
+        return mapped != null ? mapped : c;
+    }
+
+    /**
+     * 沿字典树前进一步，没有对应子节点返回 -1
+     */
+    private int step(int node, char c) {
+        int i = Arrays.binarySearch(childChars[node], c);
+        return i >= 0 ? childNodes[node][i] : -1;
+    }
+}
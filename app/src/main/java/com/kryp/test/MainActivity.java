@@ -1,11 +1,14 @@
 package com.kryp.test;
 
 import android.app.Activity;
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
+import android.media.projection.MediaProjectionManager;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
@@ -17,6 +20,8 @@ import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import org.json.JSONException;
+
 import java.io.File;
 
 /**
@@ -33,11 +38,27 @@ public class MainActivity extends Activity {
     private static final String KEY_CLICK_INTERVAL = "click_interval";
     private static final String KEY_TARGET_X = "target_x";
     private static final String KEY_TARGET_Y = "target_y";
+    private static final String KEY_PROJECTION_SCALE = "projection_scale";
+    private static final String KEY_CHANGE_THRESHOLD = "change_threshold";
+    private static final String KEY_RULES = "rules";
+    private static final String KEY_SCHEDULE_MODE = "schedule_mode";
+    private static final String KEY_MIN_INTERVAL = "min_detection_interval";
+    private static final String KEY_MAX_INTERVAL = "max_detection_interval";
+    private static final String KEY_OCR_PREPROCESS = "ocr_preprocess";
+    private static final String KEY_OCR_SCALE = "ocr_scale";
+    
+    private static final int REQUEST_CODE_PROJECTION = 2000;
     
     // 默认值
     private static final float DEFAULT_DETECTION_INTERVAL = 1.0f;
     private static final int DEFAULT_CLICK_INTERVAL = 500;
-    private static final int DEFAULT_SCREENSHOT_MODE = 0; // 0=FILE, 1=PIPE
+    private static final int DEFAULT_SCREENSHOT_MODE = 0; // 0=FILE, 1=PIPE, 2=RAW, 3=PROJECTION, 4=SHARED_MEMORY
+    private static final float DEFAULT_PROJECTION_SCALE = 0.5f;
+    private static final int DEFAULT_SCHEDULE_MODE = 0; // 0=固定延迟, 1=固定频率, 2=自适应
+    private static final float DEFAULT_MIN_INTERVAL = 0.2f;
+    private static final float DEFAULT_MAX_INTERVAL = 3.0f;
+    private static final int DEFAULT_OCR_PREPROCESS = 0; // 0=原图, 1=灰度, 2=二值化
+    private static final float DEFAULT_OCR_SCALE = 1.0f;
     
     // UI 控件
     private LinearLayout authBar;
@@ -46,8 +67,23 @@ public class MainActivity extends Activity {
     private RadioGroup rgScreenshotMode;
     private RadioButton rbFileMode;
     private RadioButton rbPipeMode;
+    private RadioButton rbRawMode;
+    private RadioButton rbProjectionMode;
+    private RadioButton rbSharedMemoryMode;
     private EditText etDetectionInterval;
+    private RadioButton rbScheduleFixedDelay;
+    private RadioButton rbScheduleFixedRate;
+    private RadioButton rbScheduleAdaptive;
+    private EditText etMinInterval;
+    private EditText etMaxInterval;
     private EditText etClickInterval;
+    private EditText etProjectionScale;
+    private EditText etChangeThreshold;
+    private RadioButton rbOcrNone;
+    private RadioButton rbOcrGrayscale;
+    private RadioButton rbOcrBinary;
+    private EditText etOcrScale;
+    private EditText etRules;
     private Button btnSaveSettings;
     private Button btnShowFloating;
     private Button btnHideFloating;
@@ -60,14 +96,18 @@ public class MainActivity extends Activity {
     // 配置参数
     private int screenshotMode = DEFAULT_SCREENSHOT_MODE;
     private float detectionInterval = DEFAULT_DETECTION_INTERVAL;
+    private int scheduleMode = DEFAULT_SCHEDULE_MODE;
+    private float minInterval = DEFAULT_MIN_INTERVAL;
+    private float maxInterval = DEFAULT_MAX_INTERVAL;
     private int clickInterval = DEFAULT_CLICK_INTERVAL;
+    private float projectionScale = DEFAULT_PROJECTION_SCALE;
+    private int changeThreshold = FrameChangeGate.DEFAULT_THRESHOLD;
+    private int ocrPreprocess = DEFAULT_OCR_PREPROCESS;
+    private float ocrScale = DEFAULT_OCR_SCALE;
     private int targetX = -1;
     private int targetY = -1;
-    
-    // 运行状态
-    private boolean isRunning = false;
-    private Handler handler;
-    private Runnable clickRunnable;
+    // 自定义规则 JSON，为空时使用默认规则
+    private String rulesJson = "";
     
     // 悬浮窗服务
     private Intent floatingWindowServiceIntent;
@@ -78,11 +118,13 @@ public class MainActivity extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
-        handler = new Handler(Looper.getMainLooper());
         initViews();
         loadSettings();
         initShizuku();
         initOcrHelper();
+        TapDispatcher.getInstance().load(this);
+        DisplayGeometry.getInstance().init(this);
+        TemplateLibrary.getInstance().init(this);
         
         // 创建临时目录
         ShizukuHelper.createTempDir();
@@ -91,9 +133,9 @@ public class MainActivity extends Activity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        stopAutoClick();
-        if (ocrHelper != null) {
-            ocrHelper.close();
+        // 检测流水线由悬浮窗服务持有，Activity 销毁时不停止；没有在运行时才释放截图服务
+        if (FloatingWindowService.getPipeline() == null) {
+            SharedFrameClient.getInstance().unbind();
         }
     }
     
@@ -107,8 +149,23 @@ public class MainActivity extends Activity {
         rgScreenshotMode = findViewById(R.id.rg_screenshot_mode);
         rbFileMode = findViewById(R.id.rb_file_mode);
         rbPipeMode = findViewById(R.id.rb_pipe_mode);
+        rbRawMode = findViewById(R.id.rb_raw_mode);
+        rbProjectionMode = findViewById(R.id.rb_projection_mode);
+        rbSharedMemoryMode = findViewById(R.id.rb_shared_memory_mode);
         etDetectionInterval = findViewById(R.id.et_detection_interval);
+        rbScheduleFixedDelay = findViewById(R.id.rb_schedule_fixed_delay);
+        rbScheduleFixedRate = findViewById(R.id.rb_schedule_fixed_rate);
+        rbScheduleAdaptive = findViewById(R.id.rb_schedule_adaptive);
+        etMinInterval = findViewById(R.id.et_min_interval);
+        etMaxInterval = findViewById(R.id.et_max_interval);
         etClickInterval = findViewById(R.id.et_click_interval);
+        etProjectionScale = findViewById(R.id.et_projection_scale);
+        etChangeThreshold = findViewById(R.id.et_change_threshold);
+        rbOcrNone = findViewById(R.id.rb_ocr_none);
+        rbOcrGrayscale = findViewById(R.id.rb_ocr_grayscale);
+        rbOcrBinary = findViewById(R.id.rb_ocr_binary);
+        etOcrScale = findViewById(R.id.et_ocr_scale);
+        etRules = findViewById(R.id.et_rules);
         btnSaveSettings = findViewById(R.id.btn_save_settings);
         btnShowFloating = findViewById(R.id.btn_show_floating);
         btnHideFloating = findViewById(R.id.btn_hide_floating);
@@ -136,6 +193,12 @@ public class MainActivity extends Activity {
                 screenshotMode = 0;
             } else if (checkedId == R.id.rb_pipe_mode) {
                 screenshotMode = 1;
+            } else if (checkedId == R.id.rb_raw_mode) {
+                screenshotMode = 2;
+            } else if (checkedId == R.id.rb_projection_mode) {
+                screenshotMode = 3;
+            } else if (checkedId == R.id.rb_shared_memory_mode) {
+                screenshotMode = 4;
             }
         });
         
@@ -169,10 +232,11 @@ public class MainActivity extends Activity {
     }
     
     /**
-     * 初始化 OCR 识别器
+     * 获取全局 OCR 识别器并在后台预热，识别器不随 Activity 销毁而关闭
      */
     private void initOcrHelper() {
-        ocrHelper = new OcrHelper();
+        ocrHelper = OcrHelper.getInstance();
+        ocrHelper.warmUp();
     }
     
     /**
@@ -197,6 +261,12 @@ public class MainActivity extends Activity {
         // 读取截图方式
         if (rbFileMode.isChecked()) {
             screenshotMode = 0;
+        } else if (rbRawMode.isChecked()) {
+            screenshotMode = 2;
+        } else if (rbProjectionMode.isChecked()) {
+            screenshotMode = 3;
+        } else if (rbSharedMemoryMode.isChecked()) {
+            screenshotMode = 4;
         } else {
             screenshotMode = 1;
         }
@@ -218,6 +288,34 @@ public class MainActivity extends Activity {
             }
         }
         
+        // 读取检测调度方式
+        if (rbScheduleFixedRate.isChecked()) {
+            scheduleMode = 1;
+        } else if (rbScheduleAdaptive.isChecked()) {
+            scheduleMode = 2;
+        } else {
+            scheduleMode = 0;
+        }
+        
+        // 读取自适应间隔范围
+        String minIntervalStr = etMinInterval.getText().toString().trim();
+        String maxIntervalStr = etMaxInterval.getText().toString().trim();
+        if (!TextUtils.isEmpty(minIntervalStr) && !TextUtils.isEmpty(maxIntervalStr)) {
+            try {
+                float min = Float.parseFloat(minIntervalStr);
+                float max = Float.parseFloat(maxIntervalStr);
+                if (min < 0.05f || max > 10.0f || min > max) {
+                    Toast.makeText(this, "间隔范围必须在 0.05 - 10.0 秒之间，且最小值不大于最大值", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                minInterval = min;
+                maxInterval = max;
+            } catch (NumberFormatException e) {
+                Toast.makeText(this, "间隔范围格式错误", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
+        
         // 读取点击间隔
         String clickIntervalStr = etClickInterval.getText().toString().trim();
         if (!TextUtils.isEmpty(clickIntervalStr)) {
@@ -235,18 +333,133 @@ public class MainActivity extends Activity {
             }
         }
         
+        // 读取录制缩放比例
+        String scaleStr = etProjectionScale.getText().toString().trim();
+        if (!TextUtils.isEmpty(scaleStr)) {
+            try {
+                float scale = Float.parseFloat(scaleStr);
+                if (scale >= 0.1f && scale <= 1.0f) {
+                    projectionScale = scale;
+                } else {
+                    Toast.makeText(this, "录制缩放比例必须在 0.1 - 1.0 之间", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                Toast.makeText(this, "录制缩放比例格式错误", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
+        
+        // 读取画面变化阈值
+        String thresholdStr = etChangeThreshold.getText().toString().trim();
+        if (!TextUtils.isEmpty(thresholdStr)) {
+            try {
+                int threshold = Integer.parseInt(thresholdStr);
+                if (threshold >= 0 && threshold <= 255) {
+                    changeThreshold = threshold;
+                } else {
+                    Toast.makeText(this, "画面变化阈值必须在 0 - 255 之间", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                Toast.makeText(this, "画面变化阈值格式错误", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
+        
+        // 读取 OCR 预处理方式
+        if (rbOcrGrayscale.isChecked()) {
+            ocrPreprocess = 1;
+        } else if (rbOcrBinary.isChecked()) {
+            ocrPreprocess = 2;
+        } else {
+            ocrPreprocess = 0;
+        }
+        
+        // 读取 OCR 缩放比例
+        String ocrScaleStr = etOcrScale.getText().toString().trim();
+        if (!TextUtils.isEmpty(ocrScaleStr)) {
+            try {
+                float scale = Float.parseFloat(ocrScaleStr);
+                if (scale >= 0.1f && scale <= 1.0f) {
+                    ocrScale = scale;
+                } else {
+                    Toast.makeText(this, "OCR 缩放比例必须在 0.1 - 1.0 之间", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                Toast.makeText(this, "OCR 缩放比例格式错误", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
+        
+        // 读取自定义规则
+        String rulesStr = etRules.getText().toString().trim();
+        if (!TextUtils.isEmpty(rulesStr)) {
+            try {
+                RuleSet.fromJson(rulesStr);
+            } catch (JSONException e) {
+                Toast.makeText(this, "规则格式错误: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                return;
+            }
+        }
+        rulesJson = rulesStr;
+        
         // 保存到 SharedPreferences
         getSharedPreferences(PREF_NAME, MODE_PRIVATE)
             .edit()
             .putInt(KEY_SCREENSHOT_MODE, screenshotMode)
+            .putFloat(KEY_PROJECTION_SCALE, projectionScale)
+            .putInt(KEY_CHANGE_THRESHOLD, changeThreshold)
+            .putInt(KEY_OCR_PREPROCESS, ocrPreprocess)
+            .putFloat(KEY_OCR_SCALE, ocrScale)
             .putFloat(KEY_DETECTION_INTERVAL, detectionInterval)
+            .putInt(KEY_SCHEDULE_MODE, scheduleMode)
+            .putFloat(KEY_MIN_INTERVAL, minInterval)
+            .putFloat(KEY_MAX_INTERVAL, maxInterval)
             .putInt(KEY_CLICK_INTERVAL, clickInterval)
             .putInt(KEY_TARGET_X, targetX)
             .putInt(KEY_TARGET_Y, targetY)
+            .putString(KEY_RULES, rulesJson)
             .apply();
         
         updateSettingsDisplay();
         Toast.makeText(this, "设置已保存", Toast.LENGTH_SHORT).show();
+        
+        // 屏幕录制方式需要单独授权，缩放比例变化时也需要重新创建虚拟显示器
+        if (screenshotMode == 3) {
+            requestProjectionPermission();
+        }
+        
+        // 共享内存方式提前启动截图服务，连接完成前自动退回原始数据方式
+        if (screenshotMode == 4) {
+            bindCaptureService();
+        } else {
+            SharedFrameClient.getInstance().unbind();
+        }
+    }
+    
+    /**
+     * 请求屏幕录制授权
+     */
+    private void requestProjectionPermission() {
+        MediaProjectionManager manager =
+            (MediaProjectionManager) getSystemService(Context.MEDIA_PROJECTION_SERVICE);
+        startActivityForResult(manager.createScreenCaptureIntent(), REQUEST_CODE_PROJECTION);
+    }
+    
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_CODE_PROJECTION) {
+            return;
+        }
+        if (resultCode == RESULT_OK && data != null) {
+            ScreenCaptureService.start(this, resultCode, data, projectionScale);
+            Toast.makeText(this, "屏幕录制已开启", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, "屏幕录制未授权", Toast.LENGTH_SHORT).show();
+        }
     }
     
     /**
@@ -256,18 +469,52 @@ public class MainActivity extends Activity {
         var prefs = getSharedPreferences(PREF_NAME, MODE_PRIVATE);
         screenshotMode = prefs.getInt(KEY_SCREENSHOT_MODE, DEFAULT_SCREENSHOT_MODE);
         detectionInterval = prefs.getFloat(KEY_DETECTION_INTERVAL, DEFAULT_DETECTION_INTERVAL);
+        scheduleMode = prefs.getInt(KEY_SCHEDULE_MODE, DEFAULT_SCHEDULE_MODE);
+        minInterval = prefs.getFloat(KEY_MIN_INTERVAL, DEFAULT_MIN_INTERVAL);
+        maxInterval = prefs.getFloat(KEY_MAX_INTERVAL, DEFAULT_MAX_INTERVAL);
         clickInterval = prefs.getInt(KEY_CLICK_INTERVAL, DEFAULT_CLICK_INTERVAL);
+        projectionScale = prefs.getFloat(KEY_PROJECTION_SCALE, DEFAULT_PROJECTION_SCALE);
+        changeThreshold = prefs.getInt(KEY_CHANGE_THRESHOLD, FrameChangeGate.DEFAULT_THRESHOLD);
+        ocrPreprocess = prefs.getInt(KEY_OCR_PREPROCESS, DEFAULT_OCR_PREPROCESS);
+        ocrScale = prefs.getFloat(KEY_OCR_SCALE, DEFAULT_OCR_SCALE);
         targetX = prefs.getInt(KEY_TARGET_X, -1);
         targetY = prefs.getInt(KEY_TARGET_Y, -1);
+        rulesJson = prefs.getString(KEY_RULES, "");
         
         // 更新 UI
         if (screenshotMode == 0) {
             rbFileMode.setChecked(true);
+        } else if (screenshotMode == 2) {
+            rbRawMode.setChecked(true);
+        } else if (screenshotMode == 3) {
+            rbProjectionMode.setChecked(true);
+        } else if (screenshotMode == 4) {
+            rbSharedMemoryMode.setChecked(true);
         } else {
             rbPipeMode.setChecked(true);
         }
         etDetectionInterval.setText(String.valueOf(detectionInterval));
+        if (scheduleMode == 1) {
+            rbScheduleFixedRate.setChecked(true);
+        } else if (scheduleMode == 2) {
+            rbScheduleAdaptive.setChecked(true);
+        } else {
+            rbScheduleFixedDelay.setChecked(true);
+        }
+        etMinInterval.setText(String.valueOf(minInterval));
+        etMaxInterval.setText(String.valueOf(maxInterval));
+        etProjectionScale.setText(String.valueOf(projectionScale));
+        etChangeThreshold.setText(String.valueOf(changeThreshold));
+        if (ocrPreprocess == 1) {
+            rbOcrGrayscale.setChecked(true);
+        } else if (ocrPreprocess == 2) {
+            rbOcrBinary.setChecked(true);
+        } else {
+            rbOcrNone.setChecked(true);
+        }
+        etOcrScale.setText(String.valueOf(ocrScale));
         etClickInterval.setText(String.valueOf(clickInterval));
+        etRules.setText(rulesJson);
         
         updateSettingsDisplay();
     }
@@ -276,16 +523,122 @@ public class MainActivity extends Activity {
      * 更新设置显示
      */
     private void updateSettingsDisplay() {
-        String modeText = (screenshotMode == 0) ? "保存图片" : "管道传输";
+        String modeText;
+        switch (screenshotMode) {
+            case 0:
+                modeText = "保存图片";
+                break;
+            case 2:
+                modeText = "原始数据";
+                break;
+            case 3:
+                modeText = "屏幕录制 (缩放 " + projectionScale + ")";
+                break;
+            case 4:
+                modeText = SharedFrameClient.getInstance().isReady() ? "共享内存" : "共享内存 (未连接)";
+                break;
+            default:
+                modeText = "管道传输";
+                break;
+        }
+        String scheduleText;
+        switch (scheduleMode) {
+            case 1:
+                scheduleText = "固定频率";
+                break;
+            case 2:
+                scheduleText = "自适应 (" + minInterval + " - " + maxInterval + " 秒)";
+                break;
+            default:
+                scheduleText = "固定延迟";
+                break;
+        }
         String text = "截图方式: " + modeText + "\n" +
                      "检测间隔: " + detectionInterval + " 秒\n" +
-                     "点击间隔: " + clickInterval + " ms";
+                     "检测调度: " + scheduleText + "\n" +
+                     "点击间隔: " + clickInterval + " ms\n" +
+                     "画面变化阈值: " + changeThreshold + "\n" +
+                     "OCR 预处理: " + getOcrPreprocessText() + " (缩放 " + ocrScale + ")\n" +
+                     "规则: " + (TextUtils.isEmpty(rulesJson) ? "默认" : "自定义");
         if (targetX >= 0 && targetY >= 0) {
             text += "\n目标位置: (" + targetX + ", " + targetY + ")";
         }
         tvCurrentSettings.setText(text);
     }
     
+    /**
+     * 启动共享内存截图服务
+     */
+    private void bindCaptureService() {
+        if (!SharedFrameClient.isSupported()) {
+            Toast.makeText(this, "共享内存截图需要 Android 8.1 及以上，将使用原始数据方式", Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (shizukuHelper == null || !shizukuHelper.checkPermission()) {
+            return;
+        }
+        if (!SharedFrameClient.getInstance().bind()) {
+            Toast.makeText(this, "截图服务启动失败，将使用原始数据方式", Toast.LENGTH_LONG).show();
+        }
+    }
+    
+    /**
+     * 将设置中的截图方式转换为 ScreenshotMode
+     */
+    private ScreenshotHelper.ScreenshotMode getScreenshotMode() {
+        switch (screenshotMode) {
+            case 0:
+                return ScreenshotHelper.ScreenshotMode.FILE;
+            case 2:
+                return ScreenshotHelper.ScreenshotMode.RAW;
+            case 3:
+                return ScreenshotHelper.ScreenshotMode.PROJECTION;
+            case 4:
+                return ScreenshotHelper.ScreenshotMode.SHARED_MEMORY;
+            default:
+                return ScreenshotHelper.ScreenshotMode.PIPE;
+        }
+    }
+    
+    /**
+     * 将设置中的 OCR 预处理方式转换为 OcrPreprocessor.Mode
+     */
+    private OcrPreprocessor.Mode getOcrPreprocessMode() {
+        switch (ocrPreprocess) {
+            case 1:
+                return OcrPreprocessor.Mode.GRAYSCALE;
+            case 2:
+                return OcrPreprocessor.Mode.BINARY;
+            default:
+                return OcrPreprocessor.Mode.NONE;
+        }
+    }
+    
+    private String getOcrPreprocessText() {
+        switch (ocrPreprocess) {
+            case 1:
+                return "灰度";
+            case 2:
+                return "二值化";
+            default:
+                return "原图";
+        }
+    }
+    
+    /**
+     * 将设置中的调度方式转换为 DetectionScheduler.Mode
+     */
+    private DetectionScheduler.Mode getScheduleMode() {
+        switch (scheduleMode) {
+            case 1:
+                return DetectionScheduler.Mode.FIXED_RATE;
+            case 2:
+                return DetectionScheduler.Mode.ADAPTIVE;
+            default:
+                return DetectionScheduler.Mode.FIXED_DELAY;
+        }
+    }
+    
     /**
      * 显示悬浮窗
      */
@@ -328,6 +681,31 @@ public class MainActivity extends Activity {
                         targetY = y;
                         updateSettingsDisplay();
                     }
+                    
+                    @Override
+                    public void onCalibrate(int safeX, int safeY) {
+                        calibrateTap(safeX, safeY);
+                    }
+                    
+                    @Override
+                    public void onRecordFrame() {
+                        recordFrame();
+                    }
+                    
+                    @Override
+                    public void onCalibrateOcr() {
+                        calibrateOcr();
+                    }
+                    
+                    @Override
+                    public void onTemplateSelected(int left, int top, int right, int bottom) {
+                        captureTemplate(left, top, right, bottom);
+                    }
+                    
+                    @Override
+                    public void onColorPicked(int x, int y) {
+                        pickColor(x, y);
+                    }
                 });
                 
                 // 恢复之前设置的位置
@@ -368,16 +746,202 @@ public class MainActivity extends Activity {
         Toast.makeText(this, "请在设置中开启悬浮窗权限", Toast.LENGTH_SHORT).show();
     }
     
+    /**
+     * 在后台线程校准各点击方式，完成后在悬浮窗显示结果
+     */
+    private void calibrateTap(int safeX, int safeY) {
+        if (isAutoClickRunning()) {
+            Toast.makeText(this, "请先停止自动点击", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new Thread(() -> {
+            String status;
+            try {
+                TapCalibrator.calibrate(getApplicationContext(), safeX, safeY);
+                status = "校准完成: " + TapDispatcher.getInstance().getSummary();
+            } catch (InterruptedException e) {
+                status = "校准已中断";
+            }
+            String finalStatus = status;
+            runOnUiThread(() -> {
+                if (floatingWindowService != null) {
+                    floatingWindowService.updateStatus(finalStatus);
+                }
+            });
+        }, "tap-calibration").start();
+    }
+    
+    /**
+     * 在后台线程截取当前画面并保存为录制帧
+     */
+    private void recordFrame() {
+        ScreenshotHelper.ScreenshotMode mode = getScreenshotMode();
+        new Thread(() -> {
+            Bitmap bitmap = ScreenshotHelper.captureScreen(mode);
+            File file = null;
+            if (bitmap != null) {
+                file = OcrScaleCalibrator.recordFrame(getApplicationContext(), bitmap);
+                ScreenshotHelper.releaseBitmap(bitmap);
+            }
+            String status = file != null ? "已录制 " + file.getName() : "录制帧失败";
+            runOnUiThread(() -> {
+                if (floatingWindowService != null) {
+                    floatingWindowService.updateStatus(status);
+                }
+            });
+        }, "frame-recorder").start();
+    }
+    
+    /**
+     * 在后台线程截取当前画面中的一块屏幕区域保存为模板
+     * 截图被缩小时把裁剪结果放大回屏幕尺寸，模板统一按屏幕坐标保存
+     */
+    private void captureTemplate(int left, int top, int right, int bottom) {
+        ScreenshotHelper.ScreenshotMode mode = getScreenshotMode();
+        new Thread(() -> {
+            String name = null;
+            Bitmap bitmap = ScreenshotHelper.captureScreen(mode);
+            if (bitmap != null) {
+                int width = bitmap.getWidth();
+                int height = bitmap.getHeight();
+                DisplayGeometry.Mapping mapping = DisplayGeometry.getInstance().mapping(width, height);
+                if (mapping == null) {
+                    mapping = new DisplayGeometry.Mapping(width, height, width, height);
+                }
+                int[] bounds = mapping.toCapture(FrameRegion.ofPixels(left, top, right, bottom)).resolve(width, height);
+                if (bounds != null) {
+                    Bitmap crop = Bitmap.createBitmap(bitmap, bounds[0], bounds[1],
+                        bounds[2] - bounds[0], bounds[3] - bounds[1]);
+                    Bitmap template = crop;
+                    if (!mapping.isIdentity()) {
+                        template = Bitmap.createScaledBitmap(crop, Math.max(1, right - left),
+                            Math.max(1, bottom - top), true);
+                    }
+                    name = TemplateLibrary.getInstance().save(template);
+                    if (template != crop) {
+                        template.recycle();
+                    }
+                    if (crop != bitmap) {
+                        crop.recycle();
+                    }
+                }
+                ScreenshotHelper.releaseBitmap(bitmap);
+            }
+            String status = name != null ? "模板已保存: " + name : "截取模板失败";
+            runOnUiThread(() -> {
+                if (floatingWindowService != null) {
+                    floatingWindowService.updateStatus(status);
+                }
+            });
+        }, "template-capture").start();
+    }
+    
+    /**
+     * 在后台线程截图读取屏幕某点的颜色，生成取色点并复制其 JSON 写法到剪贴板
+     */
+    private void pickColor(int x, int y) {
+        ScreenshotHelper.ScreenshotMode mode = getScreenshotMode();
+        new Thread(() -> {
+            PixelProbe probe = null;
+            Bitmap bitmap = ScreenshotHelper.captureScreen(mode);
+            if (bitmap != null) {
+                int width = bitmap.getWidth();
+                int height = bitmap.getHeight();
+                DisplayGeometry.Mapping mapping = DisplayGeometry.getInstance().mapping(width, height);
+                if (mapping == null) {
+                    mapping = new DisplayGeometry.Mapping(width, height, width, height);
+                }
+                int[] point = mapping.toCapture(x, y);
+                if (point[0] >= 0 && point[1] >= 0 && point[0] < width && point[1] < height) {
+                    probe = new PixelProbe(x, y, bitmap.getPixel(point[0], point[1]), PixelProbe.DEFAULT_TOLERANCE);
+                }
+                ScreenshotHelper.releaseBitmap(bitmap);
+            }
+            PixelProbe picked = probe;
+            runOnUiThread(() -> {
+                String status;
+                if (picked != null) {
+                    Log.d(TAG, "取色: " + picked);
+                    ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+                    clipboard.setPrimaryClip(ClipData.newPlainText("probe", picked.toJson()));
+                    status = "取色 " + picked + "，已复制";
+                } else {
+                    status = "取色失败";
+                }
+                if (floatingWindowService != null) {
+                    floatingWindowService.updateStatus(status);
+                }
+            });
+        }, "color-picker").start();
+    }
+    
+    /**
+     * 在后台线程用录制的帧校准 OCR 缩放比例，完成后在悬浮窗显示推荐值
+     */
+    private void calibrateOcr() {
+        if (isAutoClickRunning()) {
+            Toast.makeText(this, "请先停止自动点击", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        RuleSet rules = loadRules();
+        if (rules == null) {
+            return;
+        }
+        OcrPreprocessor.Mode mode = getOcrPreprocessMode();
+        new Thread(() -> {
+            String status;
+            try {
+                OcrScaleCalibrator.Report report = OcrScaleCalibrator.calibrate(getApplicationContext(),
+                    ocrHelper, rules, mode, OcrScaleCalibrator.DEFAULT_SCALES);
+                Log.d(TAG, "OCR 校准结果:\n" + report);
+                status = report.getShortSummary();
+                if (report.file != null) {
+                    status += "，报告: " + report.file.getName();
+                }
+            } catch (InterruptedException e) {
+                status = "OCR 校准已中断";
+            }
+            String finalStatus = status;
+            runOnUiThread(() -> {
+                if (floatingWindowService != null) {
+                    floatingWindowService.updateStatus(finalStatus);
+                }
+            });
+        }, "ocr-calibration").start();
+    }
+    
+    /**
+     * 读取当前规则集，未配置时使用默认规则
+     * @return 规则集，缺少点击位置或格式错误时提示并返回 null
+     */
+    private RuleSet loadRules() {
+        if (TextUtils.isEmpty(rulesJson)) {
+            // 默认规则需要点击位置
+            if (targetX < 0 || targetY < 0) {
+                Toast.makeText(this, "请先选择点击位置", Toast.LENGTH_SHORT).show();
+                return null;
+            }
+            return RuleSet.createDefault(targetX, targetY);
+        }
+        try {
+            return RuleSet.fromJson(rulesJson);
+        } catch (JSONException e) {
+            Toast.makeText(this, "规则格式错误: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            return null;
+        }
+    }
+    
     /**
      * 开始自动点击
+     * 检测在 DetectionPipeline 的工作线程中进行，主线程只负责界面刷新
      */
     private void startAutoClick() {
-        if (isRunning) {
+        if (isAutoClickRunning()) {
             return;
         }
         
-        if (targetX < 0 || targetY < 0) {
-            Toast.makeText(this, "请先选择点击位置", Toast.LENGTH_SHORT).show();
+        RuleSet rules = loadRules();
+        if (rules == null) {
             return;
         }
         
@@ -386,22 +950,34 @@ public class MainActivity extends Activity {
             return;
         }
         
-        isRunning = true;
-        clickRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (!isRunning) {
-                    return;
-                }
-                
-                performAutoClickLoop();
-                
-                // 计算延迟时间（毫秒）
-                long delay = (long) (detectionInterval * 1000);
-                handler.postDelayed(this, delay);
+        if (screenshotMode == 3 && !ProjectionCapture.getInstance().isActive()) {
+            Toast.makeText(this, "屏幕录制未开启，请重新保存设置授权", Toast.LENGTH_SHORT).show();
+            requestProjectionPermission();
+            return;
+        }
+        
+        if (screenshotMode == 4) {
+            bindCaptureService();
+        }
+        
+        DetectionPipeline.Config config = new DetectionPipeline.Config();
+        config.screenshotMode = getScreenshotMode();
+        config.detectionIntervalMs = (long) (detectionInterval * 1000);
+        config.scheduleMode = getScheduleMode();
+        config.minDetectionIntervalMs = (long) (minInterval * 1000);
+        config.maxDetectionIntervalMs = (long) (maxInterval * 1000);
+        config.clickIntervalMs = clickInterval;
+        config.changeThreshold = changeThreshold;
+        config.ocrPreprocessor = new OcrPreprocessor(getOcrPreprocessMode(), ocrScale);
+        config.rules = rules;
+        
+        DetectionPipeline pipeline = new DetectionPipeline(config, ocrHelper, reason -> runOnUiThread(() -> {
+            if (floatingWindowService != null) {
+                floatingWindowService.updateStatus("已停止");
             }
-        };
-        handler.post(clickRunnable);
+        }));
+        FloatingWindowService.setPipeline(pipeline);
+        pipeline.start();
         
         Log.d(TAG, "自动点击已启动");
     }
@@ -410,75 +986,15 @@ public class MainActivity extends Activity {
      * 停止自动点击
      */
     private void stopAutoClick() {
-        isRunning = false;
-        if (handler != null && clickRunnable != null) {
-            handler.removeCallbacks(clickRunnable);
-        }
+        FloatingWindowService.stopPipeline();
         Log.d(TAG, "自动点击已停止");
     }
-    
+
     /**
-     * 执行自动点击循环
+     * 是否有正在运行的检测流水线
      */
-    private void performAutoClickLoop() {
-        try {
-            // 1. 获取截图
-            ScreenshotHelper.ScreenshotMode mode = (screenshotMode == 0) 
-                ? ScreenshotHelper.ScreenshotMode.FILE 
-                : ScreenshotHelper.ScreenshotMode.PIPE;
-            Bitmap screenshot = ScreenshotHelper.captureScreen(mode);
-            
-            if (screenshot == null) {
-                Log.e(TAG, "截图失败");
-                return;
-            }
-            
-            // 2. 截取左上角区域（前 30% 高度）
-            Bitmap topLeftArea = ScreenshotHelper.cropTopLeft(screenshot, 0.3f);
-            
-            if (topLeftArea == null) {
-                screenshot.recycle();
-                return;
-            }
-            
-            // 3. OCR 识别
-            String text = ocrHelper.recognizeText(topLeftArea);
-            Log.d(TAG, "识别结果: " + text);
-            
-            // 4. 根据识别结果执行操作
-            if (text.contains("自动")) {
-                // 点击预设位置
-                boolean success = ShizukuHelper.tap(targetX, targetY);
-                if (success) {
-                    Log.d(TAG, "点击位置: (" + targetX + ", " + targetY + ")");
-                }
-                // 等待点击间隔
-                try {
-                    Thread.sleep(clickInterval);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            } else if (text.contains("进行中")) {
-                // 停止点击
-                Log.d(TAG, "检测到'进行中'，停止点击");
-                stopAutoClick();
-                if (floatingWindowService != null) {
-                    floatingWindowService.updateStatus("已停止");
-                }
-            }
-            // 无上述文字 → 暂停，等待下一次循环
-            
-            // 释放 Bitmap
-            topLeftArea.recycle();
-            screenshot.recycle();
-            
-            // 清理临时文件（如果是文件模式）
-            if (screenshotMode == 0) {
-                ScreenshotHelper.deleteScreenshotFile();
-            }
-            
-        } catch (Exception e) {
-            Log.e(TAG, "自动点击循环异常", e);
-        }
+    private boolean isAutoClickRunning() {
+        DetectionPipeline pipeline = FloatingWindowService.getPipeline();
+        return pipeline != null && pipeline.isRunning();
     }
-}
\ No newline at end of file
+}
@@ -3,21 +3,46 @@ package com.kryp.test;
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.GestureDescription;
 import android.graphics.Path;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 
 /**
  * 无障碍服务
  * 用于辅助悬浮窗操作和获取屏幕信息
+ * 点击以手势方式派发：多次点击可以合并为一个包含多个笔画的 GestureDescription，
+ * 连续点击序列在上一批手势完成的回调中立即派发下一批，不需要调用方线程 sleep 控制节奏。
  */
 public class MyAccessibilityService extends AccessibilityService {
     private static final String TAG = "MyAccessibilityService";
+    // 单次点击笔画的按下时长，远小于长按判定时间
+    public static final long DEFAULT_TAP_DURATION_MS = 20;
+
     private static MyAccessibilityService instance;
 
+    // 手势回调线程，避免占用主线程
+    private HandlerThread gestureThread;
+    private Handler gestureHandler;
+    private TapSequence activeSequence;
+
+    /**
+     * 手势派发结果监听器
+     * 回调在手势线程中执行
+     */
+    public interface GestureListener {
+        void onCompleted(int tapCount);
+        void onCancelled(int tapCount);
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
         instance = this;
+        gestureThread = new HandlerThread("accessibility-gesture");
+        gestureThread.start();
+        gestureHandler = new Handler(gestureThread.getLooper());
         Log.d(TAG, "无障碍服务已创建");
     }
 
@@ -34,7 +59,13 @@ public class MyAccessibilityService extends AccessibilityService {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        cancelTapSequence();
         instance = null;
+        if (gestureThread != null) {
+            gestureThread.quitSafely();
+            gestureThread = null;
+            gestureHandler = null;
+        }
         Log.d(TAG, "无障碍服务已销毁");
     }
 
@@ -51,29 +82,207 @@ public class MyAccessibilityService extends AccessibilityService {
      * @param y y 坐标
      */
     public boolean performClickGesture(int x, int y) {
-        if (instance == null) {
+        return dispatchTaps(new int[][]{{x, y}}, 0, DEFAULT_TAP_DURATION_MS, null);
+    }
+
+    /**
+     * 一个手势最多包含的点击数
+     */
+    public static int getMaxTapsPerGesture() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ? GestureDescription.getMaxStrokeCount() : 0;
+    }
+
+    /**
+     * 将一组点击合并为一个手势派发
+     * 第 i 个点击在手势开始后 i * intervalMs 按下；intervalMs 为 0 时所有点击同时按下（多指点击）
+     * @param points 点击坐标 {x, y}，数量不超过 getMaxTapsPerGesture()
+     * @param intervalMs 相邻点击的间隔
+     * @param tapDurationMs 每次点击的按下时长
+     * @param listener 手势完成或被取消时回调，可为 null
+     * @return 手势是否已派发
+     */
+    public boolean dispatchTaps(int[][] points, long intervalMs, long tapDurationMs, GestureListener listener) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            Log.e(TAG, "系统版本不支持手势派发");
+            return false;
+        }
+        if (points.length == 0 || points.length > GestureDescription.getMaxStrokeCount()) {
+            Log.e(TAG, "点击数量超出范围: " + points.length);
+            return false;
+        }
+        long totalDuration = (points.length - 1) * intervalMs + tapDurationMs;
+        if (totalDuration > GestureDescription.getMaxGestureDuration()) {
+            Log.e(TAG, "手势时长超出上限: " + totalDuration + " ms");
             return false;
         }
 
         try {
-            Path path = new Path();
-            path.moveTo(x, y);
-            
             GestureDescription.Builder builder = new GestureDescription.Builder();
-            builder.addStroke(new GestureDescription.StrokeDescription(path, 0, 100));
-            
-            GestureDescription gesture = builder.build();
-            return instance.dispatchGesture(gesture, null, null);
+            for (int i = 0; i < points.length; i++) {
+                Path path = new Path();
+                path.moveTo(points[i][0], points[i][1]);
+                builder.addStroke(new GestureDescription.StrokeDescription(path, i * intervalMs, tapDurationMs));
+            }
+
+            final int tapCount = points.length;
+            GestureResultCallback callback = listener == null ? null : new GestureResultCallback() {
+                @Override
+                public void onCompleted(GestureDescription gestureDescription) {
+                    listener.onCompleted(tapCount);
+                }
+
+                @Override
+                public void onCancelled(GestureDescription gestureDescription) {
+                    listener.onCancelled(tapCount);
+                }
+            };
+            return dispatchGesture(builder.build(), callback, gestureHandler);
         } catch (Exception e) {
             Log.e(TAG, "执行点击手势失败", e);
             return false;
         }
     }
 
+    /**
+     * 开始连续点击序列
+     * 按顺序循环点击各个坐标，每批最多合并 maxBatch 个点击为一个手势，
+     * 上一批完成后立即派发下一批。同一时间只有一个序列，开始新序列会取消旧序列。
+     * 取消只在批与批之间生效，需要及时停止时应限制每批的点击数。
+     * @param points 点击坐标 {x, y}
+     * @param totalTaps 总点击次数，0 表示一直点击直到 cancelTapSequence()
+     * @param intervalMs 相邻点击的间隔
+     * @param maxBatch 每批最多点击数，0 表示不超过 getMaxTapsPerGesture() 即可
+     * @param listener 序列结束（完成、被取消或被系统打断）时回调，计数为已完成的点击次数，可为 null
+     * @return 第一批手势是否已派发
+     */
+    public boolean startTapSequence(int[][] points, int totalTaps, long intervalMs, int maxBatch,
+                                    GestureListener listener) {
+        if (points.length == 0) {
+            return false;
+        }
+        TapSequence sequence;
+        synchronized (this) {
+            if (activeSequence != null) {
+                activeSequence.cancelled = true;
+            }
+            sequence = new TapSequence(points, totalTaps, intervalMs, maxBatch, listener);
+            activeSequence = sequence;
+        }
+        return sequence.dispatchNext();
+    }
+
+    /**
+     * 取消连续点击序列，已派发的一批点击会执行完
+     */
+    public synchronized void cancelTapSequence() {
+        if (activeSequence != null) {
+            activeSequence.cancelled = true;
+            activeSequence = null;
+        }
+    }
+
+    /**
+     * 连续点击序列状态
+     */
+    private class TapSequence implements GestureListener {
+        private final int[][] points;
+        private final int totalTaps;
+        private final long intervalMs;
+        private final int maxBatch;
+        private final GestureListener listener;
+        private int nextIndex;
+        private int completedTaps;
+        volatile boolean cancelled;
+
+        TapSequence(int[][] points, int totalTaps, long intervalMs, int maxBatch, GestureListener listener) {
+            this.points = points;
+            this.totalTaps = totalTaps;
+            this.intervalMs = intervalMs;
+            this.maxBatch = maxBatch;
+            this.listener = listener;
+        }
+
+        /**
+         * 派发下一批点击
+         */
+        boolean dispatchNext() {
+            int batchSize = getMaxTapsPerGesture();
+            if (intervalMs > 0) {
+                // 一批点击的总时长不能超过手势时长上限
+                long maxByDuration = (GestureDescription.getMaxGestureDuration() - DEFAULT_TAP_DURATION_MS) / intervalMs + 1;
+                batchSize = (int) Math.min(batchSize, maxByDuration);
+            }
+            if (maxBatch > 0) {
+                batchSize = Math.min(batchSize, maxBatch);
+            }
+            if (totalTaps > 0) {
+                batchSize = Math.min(batchSize, totalTaps - completedTaps);
+            }
+            int[][] batch = new int[batchSize][];
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = points[(nextIndex + i) % points.length];
+            }
+            nextIndex = (nextIndex + batchSize) % points.length;
+            if (!dispatchTaps(batch, intervalMs, DEFAULT_TAP_DURATION_MS, this)) {
+                finish(false);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void onCompleted(int tapCount) {
+            completedTaps += tapCount;
+            Handler handler = gestureHandler;
+            if (cancelled || handler == null) {
+                finish(false);
+            } else if (totalTaps > 0 && completedTaps >= totalTaps) {
+                finish(true);
+            } else {
+                // 下一批与上一批保持相同的点击间隔
+                if (intervalMs > DEFAULT_TAP_DURATION_MS) {
+                    handler.postDelayed(this::dispatchNextIfActive, intervalMs - DEFAULT_TAP_DURATION_MS);
+                } else {
+                    dispatchNextIfActive();
+                }
+            }
+        }
+
+        @Override
+        public void onCancelled(int tapCount) {
+            // 手势被用户触摸或其他手势打断
+            Log.d(TAG, "点击序列被打断，已完成 " + completedTaps + " 次");
+            finish(false);
+        }
+
+        private void dispatchNextIfActive() {
+            if (cancelled) {
+                finish(false);
+            } else {
+                dispatchNext();
+            }
+        }
+
+        private void finish(boolean completed) {
+            synchronized (MyAccessibilityService.this) {
+                if (activeSequence == this) {
+                    activeSequence = null;
+                }
+            }
+            if (listener != null) {
+                if (completed) {
+                    listener.onCompleted(completedTaps);
+                } else {
+                    listener.onCancelled(completedTaps);
+                }
+            }
+        }
+    }
+
     /**
      * 检查服务是否正在运行
      */
     public static boolean isServiceRunning() {
         return instance != null;
     }
-}
\ No newline at end of file
+}
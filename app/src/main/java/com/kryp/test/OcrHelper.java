@@ -1,79 +1,262 @@
 package com.kryp.test;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.Log;
 
 import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.text.Text;
 import com.google.mlkit.vision.text.TextRecognition;
 import com.google.mlkit.vision.text.chinese.ChineseTextRecognizerOptions;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * OCR 识别辅助类
  * 使用 Google ML Kit 进行文字识别
+ * 识别结果按区域像素内容缓存，相同画面不会重复识别。
+ * recognizeAsync() 为非阻塞接口，返回一次识别的结构化结果，支持截止时间、取消和并发数限制；
+ * 其余同步方法都基于同一次识别结果回答。
+ * 识别器是进程级单例，不随 Activity 销毁而关闭；ML Kit 在第一次识别时才加载模型，
+ * 启动时调用 warmUp() 在后台用一张合成图片识别一次，使第一帧检测不再承担模型加载的耗时。
  */
 public class OcrHelper {
     private static final String TAG = "OcrHelper";
-    
+
+    // 结果缓存默认容量（字节）
+    private static final long DEFAULT_CACHE_BYTES = 2 * 1024 * 1024;
+    // 同步接口的默认超时时间
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    // 同时进行中的识别请求上限
+    private static final int MAX_IN_FLIGHT = 2;
+    // 预热图片的尺寸和文字
+    private static final int WARM_UP_WIDTH = 480;
+    private static final int WARM_UP_HEIGHT = 120;
+    private static final String WARM_UP_TEXT = "自动点击 123";
+
+    private static OcrHelper instance;
+
     // 中文识别器
     private com.google.mlkit.vision.text.TextRecognizer recognizer;
 
-    public OcrHelper() {
+    // 识别结果缓存
+    private final ResultCache cache = new ResultCache(DEFAULT_CACHE_BYTES);
+    private int[] hashPixels = new int[0];
+    // 预处理的输入、输出像素缓冲区
+    private int[] preprocessPixels = new int[0];
+    private int[] preprocessOutput;
+
+    // 进行中的识别请求许可，ML Kit 任务真正结束时才归还
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    // 识别回调与截止时间调度线程，避免回调落在主线程
+    private final ScheduledExecutorService callbackExecutor;
+    // 预热是否已经开始（失败后复位以便重试），以及是否已经成功完成
+    private boolean warmUpStarted;
+    private volatile boolean warm;
+
+    /**
+     * 获取全局实例
+     */
+    public static synchronized OcrHelper getInstance() {
+        if (instance == null) {
+            instance = new OcrHelper();
+        }
+        return instance;
+    }
+
+    private OcrHelper() {
         // 创建中文识别器
         recognizer = TextRecognition.getClient(
             new ChineseTextRecognizerOptions.Builder().build()
         );
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "ocr-callback");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        callbackExecutor = executor;
     }
 
     /**
-     * 识别图片中的文字
+     * 在后台预热识别器，预热进行中或已成功时重复调用无副作用，失败后再次调用会重试
+     * 合成图片包含中文和数字，使文字检测和识别模型都被加载；耗时记入 PipelineMetrics 的预热阶段，不计入 OCR 阶段
+     */
+    public synchronized void warmUp() {
+        if (warmUpStarted) {
+            return;
+        }
+        warmUpStarted = true;
+        Bitmap bitmap = Bitmap.createBitmap(WARM_UP_WIDTH, WARM_UP_HEIGHT, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.WHITE);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.BLACK);
+        paint.setTextSize(WARM_UP_HEIGHT / 2f);
+        new Canvas(bitmap).drawText(WARM_UP_TEXT, WARM_UP_HEIGHT / 4f, WARM_UP_HEIGHT * 0.7f, paint);
+
+        long start = System.nanoTime();
+        try {
+            recognizer.process(InputImage.fromBitmap(bitmap, 0))
+                .addOnCompleteListener(callbackExecutor, task -> {
+                    bitmap.recycle();
+                    if (task.isSuccessful()) {
+                        warm = true;
+                        PipelineMetrics.record(PipelineMetrics.Stage.WARM_UP, start);
+                        Log.d(TAG, "识别器预热完成，耗时 " + (System.nanoTime() - start) / 1000000 + "ms");
+                    } else {
+                        onWarmUpFailed(task.getException());
+                    }
+                });
+        } catch (Exception e) {
+            bitmap.recycle();
+            onWarmUpFailed(e);
+        }
+    }
+
+    private synchronized void onWarmUpFailed(Exception e) {
+        warmUpStarted = false;
+        PipelineMetrics.recordError(PipelineMetrics.Stage.WARM_UP);
+        Log.e(TAG, "识别器预热失败", e);
+    }
+
+    /**
+     * 预热是否已经成功完成
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * 异步识别图片
+     * 返回的 Future 在识别完成、失败、超过截止时间或被取消时结束。
+     * 超时或取消后 ML Kit 内部任务仍可能在读取 bitmap，调用方不应立即复用该 bitmap。
+     * 进行中的请求达到上限时立即以 RejectedExecutionException 失败。
+     * 实际识别的耗时记入 PipelineMetrics 的 OCR 阶段（不含缓存命中，预热结束前的识别记入预热阶段）。
      * @param bitmap 要识别的图片
-     * @return 识别到的文字内容
+     * @param timeoutMs 截止时间（毫秒），0 表示不限制
+     * @return 识别结果
      */
-    public String recognizeText(Bitmap bitmap) {
+    public ResultFuture<OcrResult> recognizeAsync(Bitmap bitmap, long timeoutMs) {
+        return recognizeAsync(bitmap, timeoutMs, true);
+    }
+
+    /**
+     * 异步识别图片
+     * @param bitmap 要识别的图片
+     * @param timeoutMs 截止时间（毫秒），0 表示不限制
+     * @param useCache 是否使用结果缓存；测量识别耗时（如 OCR 校准）时应为 false
+     * @return 识别结果
+     */
+    public ResultFuture<OcrResult> recognizeAsync(Bitmap bitmap, long timeoutMs, boolean useCache) {
+        ResultFuture<OcrResult> future = new ResultFuture<>();
         if (bitmap == null || bitmap.isRecycled()) {
-            Log.e(TAG, "Bitmap 为空或已回收");
-            return "";
+            future.completeExceptionally(new IllegalArgumentException("Bitmap 为空或已回收"));
+            return future;
+        }
+
+        long key = useCache ? hashBitmap(bitmap) : 0;
+        OcrResult cached = useCache ? cache.get(key) : null;
+        if (cached != null) {
+            future.complete(cached);
+            return future;
+        }
+
+        if (!inFlight.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException("进行中的 OCR 请求已达上限"));
+            return future;
         }
 
+        // 预热结束前的识别包含模型加载，记入预热阶段
+        boolean cold = !warm;
+        long start = System.nanoTime();
         try {
             InputImage image = InputImage.fromBitmap(bitmap, 0);
-            
-            // 使用 CountDownLatch 等待异步结果
-            final String[] resultText = new String[1];
-            final CountDownLatch latch = new CountDownLatch(1);
-            
             recognizer.process(image)
-                .addOnSuccessListener(visionText -> {
-                    resultText[0] = visionText.getText();
-                    latch.countDown();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "OCR 识别失败", e);
-                    resultText[0] = "";
-                    latch.countDown();
+                .addOnCompleteListener(callbackExecutor, task -> {
+                    inFlight.release();
+                    if (task.isSuccessful()) {
+                        OcrResult result = OcrResult.from(task.getResult());
+                        if (useCache) {
+                            cache.put(key, result);
+                        }
+                        warm = true;
+                        if (future.complete(result)) {
+                            PipelineMetrics.record(cold ? PipelineMetrics.Stage.WARM_UP
+                                : PipelineMetrics.Stage.OCR, start);
+                        }
+                    } else {
+                        Exception e = task.getException();
+                        if (future.completeExceptionally(e != null ? e : new CancellationException())) {
+                            PipelineMetrics.recordError(PipelineMetrics.Stage.OCR);
+                        }
+                    }
                 });
-            
-            // 等待最多 5 秒
-            boolean completed = latch.await(5, TimeUnit.SECONDS);
-            if (!completed) {
+        } catch (Exception e) {
+            inFlight.release();
+            PipelineMetrics.recordError(PipelineMetrics.Stage.OCR);
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (timeoutMs > 0) {
+            ScheduledFuture<?> deadline = callbackExecutor.schedule(() -> {
+                if (future.completeExceptionally(new TimeoutException("OCR 识别超时"))) {
+                    PipelineMetrics.recordError(PipelineMetrics.Stage.OCR);
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+            future.addListener(() -> deadline.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * 同步识别图片
+     * @param bitmap 要识别的图片
+     * @return 识别结果，失败或超时返回 null
+     */
+    public OcrResult recognize(Bitmap bitmap) {
+        try {
+            return recognizeAsync(bitmap, DEFAULT_TIMEOUT_MS).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
                 Log.e(TAG, "OCR 识别超时");
-                return "";
+            } else {
+                Log.e(TAG, "OCR 识别失败", e.getCause());
             }
-            
-            return resultText[0] != null ? resultText[0] : "";
-        } catch (Exception e) {
-            Log.e(TAG, "OCR 识别异常", e);
-            return "";
+            return null;
+        } catch (CancellationException e) {
+            return null;
         }
     }
 
+    /**
+     * 识别图片中的文字
+     * @param bitmap 要识别的图片
+     * @return 识别到的文字内容
+     */
+    public String recognizeText(Bitmap bitmap) {
+        OcrResult result = recognize(bitmap);
+        return result != null ? result.text : "";
+    }
+
     /**
      * 检查图片中是否包含指定文字
      * @param bitmap 要识别的图片
@@ -81,8 +264,8 @@ public class OcrHelper {
      * @return 是否包含目标文字
      */
     public boolean containsText(Bitmap bitmap, String targetText) {
-        String recognizedText = recognizeText(bitmap);
-        return recognizedText.contains(targetText);
+        OcrResult result = recognize(bitmap);
+        return result != null && result.contains(targetText);
     }
 
     /**
@@ -91,38 +274,8 @@ public class OcrHelper {
      * @return 文字块位置列表
      */
     public List<TextBlock> getTextBlocks(Bitmap bitmap) {
-        List<TextBlock> blocks = new ArrayList<>();
-        
-        if (bitmap == null || bitmap.isRecycled()) {
-            return blocks;
-        }
-
-        try {
-            InputImage image = InputImage.fromBitmap(bitmap, 0);
-            final CountDownLatch latch = new CountDownLatch(1);
-            
-            recognizer.process(image)
-                .addOnSuccessListener(visionText -> {
-                    for (Text.TextBlock block : visionText.getTextBlocks()) {
-                        Rect boundingBox = block.getBoundingBox();
-                        String text = block.getText();
-                        if (boundingBox != null && text != null) {
-                            blocks.add(new TextBlock(text, boundingBox));
-                        }
-                    }
-                    latch.countDown();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "获取文字块失败", e);
-                    latch.countDown();
-                });
-            
-            latch.await(5, TimeUnit.SECONDS);
-        } catch (Exception e) {
-            Log.e(TAG, "获取文字块异常", e);
-        }
-        
-        return blocks;
+        OcrResult result = recognize(bitmap);
+        return (result != null ? result : OcrResult.EMPTY).toTextBlocks();
     }
 
     /**
@@ -132,22 +285,66 @@ public class OcrHelper {
      * @return 文字位置矩形，未找到返回 null
      */
     public Rect findTextPosition(Bitmap bitmap, String targetText) {
-        List<TextBlock> blocks = getTextBlocks(bitmap);
-        for (TextBlock block : blocks) {
-            if (block.text.contains(targetText)) {
-                return block.rect;
-            }
+        OcrResult result = recognize(bitmap);
+        return result != null ? result.findText(targetText) : null;
+    }
+
+    /**
+     * 按预处理配置生成用于识别的图片
+     * 返回的 Bitmap 来自 BitmapPool，用完后归还；识别结果需按 OcrPreprocessor.getScaleX()/getScaleY() 换算回原图坐标
+     * @param preprocessor 预处理配置
+     * @param bitmap 区域图片
+     * @return 预处理后的图片
+     */
+    public synchronized Bitmap preprocess(OcrPreprocessor preprocessor, Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = width * height;
+        if (preprocessPixels.length < size) {
+            preprocessPixels = new int[size];
         }
-        return null;
+        bitmap.getPixels(preprocessPixels, 0, width, 0, 0, width, height);
+        int outWidth = preprocessor.outputWidth(width);
+        int outHeight = preprocessor.outputHeight(height);
+        preprocessOutput = preprocessor.process(preprocessPixels, width, height, preprocessOutput);
+        Bitmap output = BitmapPool.getInstance().acquire(outWidth, outHeight);
+        output.setPixels(preprocessOutput, 0, outWidth, 0, 0, outWidth, outHeight);
+        return output;
     }
 
     /**
-     * 释放资源
+     * 计算图片像素内容哈希
      */
-    public void close() {
-        if (recognizer != null) {
-            recognizer.close();
+    private synchronized long hashBitmap(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = width * height;
+        if (hashPixels.length < size) {
+            hashPixels = new int[size];
         }
+        bitmap.getPixels(hashPixels, 0, width, 0, 0, width, height);
+        return FrameHash.hash64(hashPixels, width, height);
+    }
+
+    /**
+     * 获取缓存命中次数
+     */
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * 获取缓存未命中次数
+     */
+    public long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * 清空识别结果缓存
+     */
+    public void clearCache() {
+        cache.clear();
     }
 
     /**
@@ -162,4 +359,71 @@ public class OcrHelper {
             this.rect = rect;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 识别结果缓存
+     * 以像素哈希为键，按最近最少使用顺序淘汰，总占用按估算字节数限制
+     */
+    static class ResultCache {
+        private final long maxBytes;
+        private final LinkedHashMap<Long, OcrResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Long, Integer> sizes = new HashMap<>();
+        private long currentBytes;
+        private long hitCount;
+        private long missCount;
+
+        ResultCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized OcrResult get(long key) {
+            OcrResult value = entries.get(key);
+            if (value != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+            return value;
+        }
+
+        synchronized void put(long key, OcrResult value) {
+            int size = value.estimateSize();
+            if (size > maxBytes) {
+                return;
+            }
+            Integer oldSize = sizes.remove(key);
+            if (oldSize != null) {
+                currentBytes -= oldSize;
+            }
+            entries.put(key, value);
+            sizes.put(key, size);
+            currentBytes += size;
+
+            // 访问顺序的 LinkedHashMap 中最久未使用的条目在最前面
+            Iterator<Map.Entry<Long, OcrResult>> it = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                Long eldest = it.next().getKey();
+                it.remove();
+                currentBytes -= sizes.remove(eldest);
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            sizes.clear();
+            currentBytes = 0;
+        }
+
+        synchronized long getHitCount() {
+            return hitCount;
+        }
+
+        synchronized long getMissCount() {
+            return missCount;
+        }
+
+        synchronized long getCurrentBytes() {
+            return currentBytes;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.kryp.test;
+
+import java.util.Arrays;
+
+/**
+ * OCR 预处理
+ * 在裁剪之后、识别之前对区域图片做缩小、灰度、对比度拉伸和二值化。
+ * 识别耗时大致与像素数成正比，而触发文字通常是大号、高对比度的界面文字，
+ * 缩小到仍能稳定识别的最小尺寸可以直接降低每一帧的识别耗时；合适的比例由 OcrScaleCalibrator 测得。
+ * 缩小按面积平均，各输出像素取对应源矩形内的均值，不会像最近邻那样丢失细笔画。
+ * 输出仍为 ARGB 像素，识别结果的坐标需要按 getScaleX()/getScaleY() 换算回区域坐标。
+ * 内部复用缓冲区，不是线程安全的。本类不依赖 Android API。
+ */
+public class OcrPreprocessor {
+    /**
+     * 预处理方式
+     */
+    public enum Mode {
+        NONE,      // 只缩小
+        GRAYSCALE, // 灰度并拉伸对比度
+        BINARY     // 灰度、拉伸对比度后按 Otsu 阈值二值化
+    }
+
+    // 对比度拉伸时两端各忽略的像素比例（抗噪点）
+    private static final float CLIP_RATIO = 0.01f;
+    // 亮度范围小于该值时视为纯色区域，不做拉伸和二值化
+    private static final int MIN_CONTRAST = 16;
+
+    private final Mode mode;
+    private final float scale;
+
+    private int[] columnOf = new int[0];
+    private int[] columnWidth = new int[0];
+    private int[] sumR = new int[0];
+    private int[] sumG = new int[0];
+    private int[] sumB = new int[0];
+    private final int[] histogram = new int[256];
+    private final int[] stretched = new int[256];
+    private final int[] lookup = new int[256];
+
+    /**
+     * @param mode 预处理方式
+     * @param scale 缩放比例 (0.0 - 1.0]
+     */
+    public OcrPreprocessor(Mode mode, float scale) {
+        this.mode = mode;
+        this.scale = (scale > 0 && scale <= 1) ? scale : 1f;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * 是否需要处理，不缩小也不做颜色处理时直接识别原图
+     */
+    public boolean isEnabled() {
+        return mode != Mode.NONE || scale < 1f;
+    }
+
+    public int outputWidth(int width) {
+        return Math.max(1, Math.round(width * scale));
+    }
+
+    public int outputHeight(int height) {
+        return Math.max(1, Math.round(height * scale));
+    }
+
+    /**
+     * 预处理
+     * @param src 源像素 (ARGB)，按行存放
+     * @param width 源宽度
+     * @param height 源高度
+     * @param dst 输出缓冲区，长度不足时重新分配，可为 null
+     * @return 输出像素，尺寸为 outputWidth(width) x outputHeight(height)
+     */
+    public int[] process(int[] src, int width, int height, int[] dst) {
+        int outWidth = outputWidth(width);
+        int outHeight = outputHeight(height);
+        if (dst == null || dst.length < outWidth * outHeight) {
+            dst = new int[outWidth * outHeight];
+        }
+        boolean gray = mode != Mode.NONE;
+        downscale(src, width, height, dst, outWidth, outHeight, gray);
+        if (!gray) {
+            return dst;
+        }
+
+        int count = outWidth * outHeight;
+        int[] hist = histogram;
+        Arrays.fill(hist, 0);
+        for (int i = 0; i < count; i++) {
+            hist[dst[i]]++;
+        }
+        int clip = (int) (count * CLIP_RATIO);
+        int low = percentile(hist, clip);
+        int high = percentile(hist, count - 1 - clip);
+        if (high - low < MIN_CONTRAST) {
+            // 纯色区域：保持灰度输出
+            for (int i = 0; i < count; i++) {
+                dst[i] = grayPixel(dst[i]);
+            }
+            return dst;
+        }
+
+        // 拉伸后的直方图，用于计算二值化阈值
+        Arrays.fill(stretched, 0);
+        for (int v = 0; v < 256; v++) {
+            int value = v <= low ? 0 : v >= high ? 255 : (v - low) * 255 / (high - low);
+            lookup[v] = value;
+            stretched[value] += hist[v];
+        }
+        if (mode == Mode.BINARY) {
+            int threshold = otsuThreshold(stretched, count);
+            int dark = 0;
+            for (int v = 0; v <= threshold; v++) {
+                dark += stretched[v];
+            }
+            // 识别器对白底黑字最稳定，深色背景时反相
+            boolean invert = dark > count / 2;
+            for (int v = 0; v < 256; v++) {
+                boolean black = lookup[v] <= threshold;
+                lookup[v] = black != invert ? 0 : 255;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            dst[i] = grayPixel(lookup[dst[i]]);
+        }
+        return dst;
+    }
+
+    /**
+     * 识别结果 x 坐标换算回源图的比例
+     */
+    public float getScaleX(int width) {
+        return (float) width / outputWidth(width);
+    }
+
+    /**
+     * 识别结果 y 坐标换算回源图的比例
+     */
+    public float getScaleY(int height) {
+        return (float) height / outputHeight(height);
+    }
+
+    /**
+     * 面积平均缩小；gray 为 true 时输出亮度值 (0 - 255) 而不是 ARGB 像素
+     */
+    private void downscale(int[] src, int width, int height, int[] dst, int outWidth, int outHeight, boolean gray) {
+        if (columnOf.length < width) {
+            columnOf = new int[width];
+        }
+        if (columnWidth.length < outWidth) {
+            columnWidth = new int[outWidth];
+            sumR = new int[outWidth];
+            sumG = new int[outWidth];
+            sumB = new int[outWidth];
+        }
+        for (int ox = 0; ox < outWidth; ox++) {
+            int x0 = (int) ((long) ox * width / outWidth);
+            int x1 = Math.max(x0 + 1, (int) ((long) (ox + 1) * width / outWidth));
+            columnWidth[ox] = x1 - x0;
+            for (int x = x0; x < x1; x++) {
+                columnOf[x] = ox;
+            }
+        }
+
+        for (int oy = 0; oy < outHeight; oy++) {
+            int y0 = (int) ((long) oy * height / outHeight);
+            int y1 = Math.max(y0 + 1, (int) ((long) (oy + 1) * height / outHeight));
+            Arrays.fill(sumR, 0, outWidth, 0);
+            if (!gray) {
+                Arrays.fill(sumG, 0, outWidth, 0);
+                Arrays.fill(sumB, 0, outWidth, 0);
+            }
+            for (int y = y0; y < y1; y++) {
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = src[offset + x];
+                    int r = (pixel >> 16) & 0xFF;
+                    int g = (pixel >> 8) & 0xFF;
+                    int b = pixel & 0xFF;
+                    int column = columnOf[x];
+                    if (gray) {
+                        // BT.601 亮度的整数近似
+                        sumR[column] += (r * 77 + g * 150 + b * 29) >> 8;
+                    } else {
+                        sumR[column] += r;
+                        sumG[column] += g;
+                        sumB[column] += b;
+                    }
+                }
+            }
+            int rows = y1 - y0;
+            int offset = oy * outWidth;
+            for (int ox = 0; ox < outWidth; ox++) {
+                int area = rows * columnWidth[ox];
+                if (gray) {
+                    dst[offset + ox] = sumR[ox] / area;
+                } else {
+                    dst[offset + ox] = 0xFF000000 | (sumR[ox] / area) << 16 | (sumG[ox] / area) << 8 | sumB[ox] / area;
+                }
+            }
+        }
+    }
+
+    private static int percentile(int[] hist, int rank) {
+        int seen = 0;
+        for (int v = 0; v < 256; v++) {
+            seen += hist[v];
+            if (seen > rank) {
+                return v;
+            }
+        }
+        return 255;
+    }
+
+    /**
+     * Otsu 阈值：使前景、背景两类的类间方差最大，返回属于暗类的最大亮度
+     */
+    static int otsuThreshold(int[] hist, int count) {
+        long total = 0;
+        for (int v = 0; v < 256; v++) {
+            total += (long) v * hist[v];
+        }
+        long sumDark = 0;
+        int weightDark = 0;
+        double best = -1;
+        int threshold = 127;
+        for (int v = 0; v < 256; v++) {
+            weightDark += hist[v];
+            if (weightDark == 0) {
+                continue;
+            }
+            int weightLight = count - weightDark;
+            if (weightLight == 0) {
+                break;
+            }
+            sumDark += (long) v * hist[v];
+            double meanDark = (double) sumDark / weightDark;
+            double meanLight = (double) (total - sumDark) / weightLight;
+            double between = (double) weightDark * weightLight * (meanDark - meanLight) * (meanDark - meanLight);
+            if (between > best) {
+                best = between;
+                threshold = v;
+            }
+        }
+        return threshold;
+    }
+
+    private static int grayPixel(int value) {
+        return 0xFF000000 | value * 0x010101;
+    }
+
+    @Override
+    public String toString() {
+        return mode + " x" + scale;
+    }
+}
@@ -0,0 +1,275 @@
+package com.kryp.test;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.text.Text;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 结构化 OCR 识别结果
+ * 一次识别得到的全文、文字块、行、元素及其边界框和置信度，
+ * OcrHelper 的各个查询方法都从同一份结果中回答，不再重复识别。
+ */
+public class OcrResult {
+    // 每个对象（文字块、行、元素、矩形）的估算内存开销
+    private static final int OBJECT_OVERHEAD = 48;
+
+    public static final OcrResult EMPTY = new OcrResult("", Collections.emptyList());
+
+    /**
+     * 识别元素（通常是一个词或一个字）
+     */
+    public static class Element {
+        public final String text;
+        public final Rect rect;
+        public final float confidence;
+
+        Element(String text, Rect rect, float confidence) {
+            this.text = text;
+            this.rect = rect;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * 识别行
+     */
+    public static class Line {
+        public final String text;
+        public final Rect rect;
+        public final float confidence;
+        public final List<Element> elements;
+
+        Line(String text, Rect rect, float confidence, List<Element> elements) {
+            this.text = text;
+            this.rect = rect;
+            this.confidence = confidence;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * 文字块
+     */
+    public static class Block {
+        public final String text;
+        public final Rect rect;
+        // 块内各行置信度的平均值
+        public final float confidence;
+        public final List<Line> lines;
+
+        Block(String text, Rect rect, float confidence, List<Line> lines) {
+            this.text = text;
+            this.rect = rect;
+            this.confidence = confidence;
+            this.lines = lines;
+        }
+    }
+
+    public final String text;
+    public final List<Block> blocks;
+
+    public OcrResult(String text, List<Block> blocks) {
+        this.text = text;
+        this.blocks = blocks;
+    }
+
+    /**
+     * 从 ML Kit 识别结果转换
+     */
+    public static OcrResult from(Text visionText) {
+        List<Block> blocks = new ArrayList<>();
+        for (Text.TextBlock block : visionText.getTextBlocks()) {
+            List<Line> lines = new ArrayList<>();
+            float confidenceSum = 0;
+            for (Text.Line line : block.getLines()) {
+                List<Element> elements = new ArrayList<>();
+                for (Text.Element element : line.getElements()) {
+                    elements.add(new Element(element.getText(), element.getBoundingBox(),
+                        element.getConfidence()));
+                }
+                lines.add(new Line(line.getText(), line.getBoundingBox(), line.getConfidence(), elements));
+                confidenceSum += line.getConfidence();
+            }
+            float confidence = lines.isEmpty() ? 0f : confidenceSum / lines.size();
+            blocks.add(new Block(block.getText(), block.getBoundingBox(), confidence, lines));
+        }
+        return new OcrResult(visionText.getText(), blocks);
+    }
+
+    /**
+     * 按比例换算所有边界框，用于把缩小后图片上的识别结果换算回原图坐标
+     * @param scaleX x 坐标乘数
+     * @param scaleY y 坐标乘数
+     */
+    public OcrResult scale(float scaleX, float scaleY) {
+        if (scaleX == 1f && scaleY == 1f) {
+            return this;
+        }
+        List<Block> scaledBlocks = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            List<Line> lines = new ArrayList<>(block.lines.size());
+            for (Line line : block.lines) {
+                List<Element> elements = new ArrayList<>(line.elements.size());
+                for (Element element : line.elements) {
+                    elements.add(new Element(element.text, scaleRect(element.rect, scaleX, scaleY),
+                        element.confidence));
+                }
+                lines.add(new Line(line.text, scaleRect(line.rect, scaleX, scaleY), line.confidence, elements));
+            }
+            scaledBlocks.add(new Block(block.text, scaleRect(block.rect, scaleX, scaleY), block.confidence, lines));
+        }
+        return new OcrResult(text, scaledBlocks);
+    }
+
+    /**
+     * 把拼图的识别结果按行分回各区域，坐标换算为各区域内的坐标
+     * 行按中心点归属，同一文字块中属于同一区域的行组成新的文字块
+     * @param atlas 拼图布局
+     * @return 与拼图区域一一对应的识别结果
+     */
+    public OcrResult[] split(RegionAtlas atlas) {
+        int count = atlas.size();
+        List<List<Block>> regionBlocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            regionBlocks.add(new ArrayList<>());
+        }
+        List<List<Line>> blockLines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            blockLines.add(new ArrayList<>());
+        }
+        for (Block block : blocks) {
+            for (Line line : block.lines) {
+                Rect rect = line.rect != null ? line.rect : block.rect;
+                int index = rect != null ? atlas.locate(rect.exactCenterX(), rect.exactCenterY()) : -1;
+                if (index < 0) {
+                    continue;
+                }
+                int dx = -atlas.getX(index);
+                int dy = -atlas.getY(index);
+                List<Element> elements = new ArrayList<>(line.elements.size());
+                for (Element element : line.elements) {
+                    elements.add(new Element(element.text, offsetRect(element.rect, dx, dy), element.confidence));
+                }
+                blockLines.get(index).add(new Line(line.text, offsetRect(line.rect, dx, dy), line.confidence, elements));
+            }
+            for (int i = 0; i < count; i++) {
+                List<Line> lines = blockLines.get(i);
+                if (lines.isEmpty()) {
+                    continue;
+                }
+                StringBuilder text = new StringBuilder();
+                Rect bounds = null;
+                float confidenceSum = 0;
+                for (Line line : lines) {
+                    if (text.length() > 0) {
+                        text.append('\n');
+                    }
+                    text.append(line.text);
+                    if (line.rect != null) {
+                        if (bounds == null) {
+                            bounds = new Rect(line.rect);
+                        } else {
+                            bounds.union(line.rect);
+                        }
+                    }
+                    confidenceSum += line.confidence;
+                }
+                regionBlocks.get(i).add(new Block(text.toString(), bounds, confidenceSum / lines.size(),
+                    new ArrayList<>(lines)));
+                lines.clear();
+            }
+        }
+        OcrResult[] results = new OcrResult[count];
+        for (int i = 0; i < count; i++) {
+            List<Block> parts = regionBlocks.get(i);
+            StringBuilder text = new StringBuilder();
+            for (Block block : parts) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(block.text);
+            }
+            results[i] = parts.isEmpty() ? EMPTY : new OcrResult(text.toString(), parts);
+        }
+        return results;
+    }
+
+    private static Rect offsetRect(Rect rect, int dx, int dy) {
+        if (rect == null) {
+            return null;
+        }
+        Rect result = new Rect(rect);
+        result.offset(dx, dy);
+        return result;
+    }
+
+    private static Rect scaleRect(Rect rect, float scaleX, float scaleY) {
+        if (rect == null) {
+            return null;
+        }
+        return new Rect(Math.round(rect.left * scaleX), Math.round(rect.top * scaleY),
+            Math.round(rect.right * scaleX), Math.round(rect.bottom * scaleY));
+    }
+
+    /**
+     * 全文是否包含指定文字
+     */
+    public boolean contains(String targetText) {
+        return text.contains(targetText);
+    }
+
+    /**
+     * 查找包含指定文字的最小范围
+     * 优先返回行的边界框，行内找不到（文字跨行）时返回文字块的边界框
+     * @return 边界框，未找到返回 null
+     */
+    public Rect findText(String targetText) {
+        for (Block block : blocks) {
+            for (Line line : block.lines) {
+                if (line.rect != null && line.text.contains(targetText)) {
+                    return line.rect;
+                }
+            }
+        }
+        for (Block block : blocks) {
+            if (block.rect != null && block.text.contains(targetText)) {
+                return block.rect;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 转换为文字块列表
+     */
+    public List<OcrHelper.TextBlock> toTextBlocks() {
+        List<OcrHelper.TextBlock> result = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            if (block.rect != null && block.text != null) {
+                result.add(new OcrHelper.TextBlock(block.text, block.rect));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 估算占用的内存字节数
+     */
+    public int estimateSize() {
+        int size = OBJECT_OVERHEAD + text.length() * 2;
+        for (Block block : blocks) {
+            size += OBJECT_OVERHEAD * 2 + block.text.length() * 2;
+            for (Line line : block.lines) {
+                size += OBJECT_OVERHEAD * 2 + line.text.length() * 2;
+                for (Element element : line.elements) {
+                    size += OBJECT_OVERHEAD * 2 + element.text.length() * 2;
+                }
+            }
+        }
+        return size;
+    }
+}
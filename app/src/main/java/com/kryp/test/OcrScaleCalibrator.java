@@ -0,0 +1,352 @@
+package com.kryp.test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * OCR 缩放比例校准
+ * 在录制的若干帧上，对规则集中需要识别的每个区域依次用不同缩放比例预处理后识别，
+ * 以原图的识别结果为参照统计关键字判定一致率和耗时，推荐关键字判定全部一致的最小比例。
+ * 录制的帧以 PNG 保存在应用外部文件目录的 frames 子目录中，报告写入应用外部文件目录。
+ * 校准会阻塞调用线程，不能在主线程调用。
+ */
+public class OcrScaleCalibrator {
+    private static final String TAG = "OcrScaleCalibrator";
+    private static final String FRAMES_DIR = "frames";
+
+    // 默认参与比较的缩放比例
+    public static final float[] DEFAULT_SCALES = {1.0f, 0.75f, 0.5f, 0.4f, 0.33f, 0.25f};
+
+    /**
+     * 一种预处理配置的统计结果
+     */
+    public static class Result {
+        public final OcrPreprocessor.Mode mode;
+        public final float scale;
+        public int samples;
+        // 关键字判定与原图一致的样本数
+        public int keywordMatches;
+        // 识别文字（忽略空白）与原图完全一致的样本数
+        public int textMatches;
+        public int failures;
+        public long pixels;
+        public double preprocessMs;
+        public double ocrMs;
+
+        Result(OcrPreprocessor.Mode mode, float scale) {
+            this.mode = mode;
+            this.scale = scale;
+        }
+
+        public float getAccuracy() {
+            return samples == 0 ? 0f : (float) keywordMatches / samples;
+        }
+
+        public double getMeanOcrMs() {
+            return samples == 0 ? 0 : ocrMs / samples;
+        }
+
+        public double getMeanPreprocessMs() {
+            return samples == 0 ? 0 : preprocessMs / samples;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s x%.2f: 关键字一致 %d/%d (%.0f%%), 文字一致 %d/%d, 失败 %d, "
+                    + "平均像素 %d, 预处理 %.1fms, 识别 %.1fms",
+                mode, scale, keywordMatches, samples, getAccuracy() * 100, textMatches, samples, failures,
+                samples == 0 ? 0 : pixels / samples, getMeanPreprocessMs(), getMeanOcrMs());
+        }
+    }
+
+    /**
+     * 校准报告
+     */
+    public static class Report {
+        public final int frameCount;
+        public final int sampleCount;
+        // 原图（不做预处理）的识别结果，作为参照
+        public final Result baseline;
+        public final List<Result> results;
+        // 关键字判定全部一致的最小比例，没有时为 null
+        public final Result recommended;
+        public File file;
+
+        Report(int frameCount, int sampleCount, Result baseline, List<Result> results, Result recommended) {
+            this.frameCount = frameCount;
+            this.sampleCount = sampleCount;
+            this.baseline = baseline;
+            this.results = results;
+            this.recommended = recommended;
+        }
+
+        /**
+         * 单行摘要，用于悬浮窗显示
+         */
+        public String getShortSummary() {
+            if (sampleCount == 0) {
+                return "没有可用的录制帧或识别区域";
+            }
+            if (recommended == null) {
+                return "没有与原图一致的缩放比例";
+            }
+            return String.format(Locale.US, "推荐 x%.2f: 识别 %.1fms (原图 %.1fms)",
+                recommended.scale, recommended.getMeanOcrMs(), baseline.getMeanOcrMs());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("帧数: ").append(frameCount).append(", 样本数: ").append(sampleCount).append('\n');
+            sb.append("原图 ").append(baseline).append('\n');
+            for (Result result : results) {
+                sb.append(result == recommended ? "* " : "  ").append(result).append('\n');
+            }
+            sb.append(getShortSummary()).append('\n');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 一个待识别的区域图片及其关键字触发条件
+     */
+    private static class Sample {
+        final Bitmap bitmap;
+        final List<RuleSet.Trigger> triggers;
+        String text;
+        boolean[] matched;
+
+        Sample(Bitmap bitmap, List<RuleSet.Trigger> triggers) {
+            this.bitmap = bitmap;
+            this.triggers = triggers;
+        }
+    }
+
+    /**
+     * 录制帧目录
+     */
+    public static File getFramesDir(Context context) {
+        File base = context.getExternalFilesDir(null);
+        if (base == null) {
+            base = context.getFilesDir();
+        }
+        File dir = new File(base, FRAMES_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "创建录制帧目录失败: " + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * 保存一帧截图供校准使用
+     * @return 保存的文件，失败返回 null
+     */
+    public static File recordFrame(Context context, Bitmap bitmap) {
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS", Locale.US).format(new Date());
+        File file = new File(getFramesDir(context), "frame-" + time + ".png");
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                Log.e(TAG, "编码录制帧失败");
+                return null;
+            }
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "保存录制帧失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 在所有录制帧上校准并写入报告
+     * @param context Context
+     * @param ocrHelper OCR 识别器
+     * @param rules 规则集，只识别有关键字触发条件的区域
+     * @param mode 预处理方式
+     * @param scales 参与比较的缩放比例
+     * @return 校准报告
+     */
+    public static Report calibrate(Context context, OcrHelper ocrHelper, RuleSet rules,
+                                   OcrPreprocessor.Mode mode, float[] scales) throws InterruptedException {
+        File[] files = getFramesDir(context).listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files);
+
+        List<Sample> samples = new ArrayList<>();
+        try {
+            for (File file : files) {
+                loadSamples(file, rules, samples);
+            }
+            Log.d(TAG, "校准样本: " + files.length + " 帧, " + samples.size() + " 个区域");
+
+            Result baseline = new Result(OcrPreprocessor.Mode.NONE, 1f);
+            for (Sample sample : samples) {
+                long start = System.nanoTime();
+                OcrResult result = recognize(ocrHelper, sample.bitmap);
+                baseline.ocrMs += (System.nanoTime() - start) / 1e6;
+                baseline.samples++;
+                baseline.pixels += (long) sample.bitmap.getWidth() * sample.bitmap.getHeight();
+                if (result == null) {
+                    baseline.failures++;
+                    sample.text = "";
+                } else {
+                    sample.text = normalize(result.text);
+                }
+                sample.matched = matchKeywords(sample.triggers, sample.text);
+                baseline.keywordMatches++;
+                baseline.textMatches++;
+            }
+
+            List<Result> results = new ArrayList<>();
+            Result recommended = null;
+            for (float scale : scales) {
+                Result result = measure(ocrHelper, samples, new OcrPreprocessor(mode, scale));
+                Log.d(TAG, "校准结果: " + result);
+                results.add(result);
+                if (result.samples > 0 && result.keywordMatches == result.samples
+                        && (recommended == null || result.pixels < recommended.pixels)) {
+                    recommended = result;
+                }
+            }
+
+            Report report = new Report(files.length, samples.size(), baseline, results, recommended);
+            report.file = writeReport(context, report);
+            return report;
+        } finally {
+            for (Sample sample : samples) {
+                sample.bitmap.recycle();
+            }
+        }
+    }
+
+    private static Result measure(OcrHelper ocrHelper, List<Sample> samples, OcrPreprocessor preprocessor)
+            throws InterruptedException {
+        Result stats = new Result(preprocessor.getMode(), preprocessor.getScale());
+        for (Sample sample : samples) {
+            long start = System.nanoTime();
+            Bitmap input = preprocessor.isEnabled() ? ocrHelper.preprocess(preprocessor, sample.bitmap) : sample.bitmap;
+            long preprocessed = System.nanoTime();
+            OcrResult result = recognize(ocrHelper, input);
+            long end = System.nanoTime();
+            stats.preprocessMs += (preprocessed - start) / 1e6;
+            stats.ocrMs += (end - preprocessed) / 1e6;
+            stats.samples++;
+            stats.pixels += (long) input.getWidth() * input.getHeight();
+            if (result == null) {
+                // 识别失败或超时后 ML Kit 可能仍在读取预处理图片，不再归还到对象池
+                stats.failures++;
+                continue;
+            }
+            if (input != sample.bitmap) {
+                BitmapPool.getInstance().release(input);
+            }
+            String text = normalize(result.text);
+            if (Arrays.equals(matchKeywords(sample.triggers, text), sample.matched)) {
+                stats.keywordMatches++;
+            }
+            if (text.equals(sample.text)) {
+                stats.textMatches++;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 从一帧中裁剪出各状态需要识别的区域
+     */
+    private static void loadSamples(File file, RuleSet rules, List<Sample> samples) {
+        Bitmap frame = BitmapFactory.decodeFile(file.getAbsolutePath());
+        if (frame == null) {
+            Log.e(TAG, "无法解码录制帧: " + file.getName());
+            return;
+        }
+        try {
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            DisplayGeometry.Mapping mapping = DisplayGeometry.getInstance().mapping(width, height);
+            if (mapping == null) {
+                mapping = new DisplayGeometry.Mapping(width, height, width, height);
+            }
+            for (RuleSet.State state : rules.states) {
+                for (RuleSet.Region region : state.regions) {
+                    if (!region.needsOcr()) {
+                        continue;
+                    }
+                    int[] bounds = mapping.toCapture(region.bounds).resolve(width, height);
+                    if (bounds == null) {
+                        continue;
+                    }
+                    List<RuleSet.Trigger> triggers = new ArrayList<>();
+                    for (RuleSet.Rule rule : state.rules) {
+                        if (rule.trigger.type == RuleSet.TriggerType.TEXT && region.name.equals(rule.trigger.region)) {
+                            triggers.add(rule.trigger);
+                        }
+                    }
+                    samples.add(new Sample(Bitmap.createBitmap(frame, bounds[0], bounds[1],
+                        bounds[2] - bounds[0], bounds[3] - bounds[1]), triggers));
+                }
+            }
+        } finally {
+            frame.recycle();
+        }
+    }
+
+    /**
+     * 不使用结果缓存识别，保证每次都测到真实耗时
+     */
+    private static OcrResult recognize(OcrHelper ocrHelper, Bitmap bitmap) throws InterruptedException {
+        try {
+            return ocrHelper.recognizeAsync(bitmap, OcrHelper.DEFAULT_TIMEOUT_MS, false).get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "校准识别失败", e.getCause());
+            return null;
+        }
+    }
+
+    private static boolean[] matchKeywords(List<RuleSet.Trigger> triggers, String text) {
+        boolean[] matched = new boolean[triggers.size()];
+        for (int i = 0; i < matched.length; i++) {
+            matched[i] = !triggers.get(i).getMatcher().findAll(text).isEmpty();
+        }
+        return matched;
+    }
+
+    private static String normalize(String text) {
+        return text.replaceAll("\\s+", "");
+    }
+
+    private static File writeReport(Context context, Report report) {
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "ocr-calibration-" + time + ".txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("# " + time + "\n");
+            writer.write(report.toString());
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "写入校准报告失败", e);
+            return null;
+        }
+    }
+}
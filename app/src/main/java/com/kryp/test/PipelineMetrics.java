@@ -0,0 +1,127 @@
+package com.kryp.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 检测流水线各阶段的延迟统计
+ * 每个阶段一个 LatencyHistogram，截图、裁剪、OCR、点击各自在实现处记录，
+ * 端到端延迟从开始截图记到点击完成。
+ * 识别器预热和首帧延迟（流水线启动到第一帧完成决策）单独统计，不混入稳定运行时的各阶段分布。
+ */
+public class PipelineMetrics {
+    /**
+     * 统计阶段
+     */
+    public enum Stage {
+        CAPTURE("截图"),
+        CROP("裁剪"),
+        OCR("识别"),
+        TAP("点击"),
+        END_TO_END("端到端"),
+        WARM_UP("预热"),
+        FIRST_FRAME("首帧");
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     * @param stage 阶段
+     * @param startNanos 开始时的 System.nanoTime()
+     */
+    public static void record(Stage stage, long startNanos) {
+        histograms[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录一次失败
+     */
+    public static void recordError(Stage stage) {
+        histograms[stage.ordinal()].recordError();
+    }
+
+    public static LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * 简短摘要，每个阶段一行：p50 / p99 和次数
+     */
+    public static String getShortSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = get(stage);
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(stage.label).append(": ");
+            if (histogram.getCount() == 0 && histogram.getErrorCount() == 0) {
+                sb.append("-");
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%.0f/%.0fms ×%d",
+                histogram.getPercentileMicros(0.5) / 1000.0,
+                histogram.getPercentileMicros(0.99) / 1000.0,
+                histogram.getCount()));
+            if (histogram.getErrorCount() > 0) {
+                sb.append(" 错").append(histogram.getErrorCount());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 完整摘要，每个阶段一行
+     */
+    public static String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            sb.append(stage.label).append(": ").append(get(stage).summary()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将当前统计快照导出为文本文件
+     * @param dir 输出目录
+     * @return 输出文件
+     */
+    public static File export(File dir) throws IOException {
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "metrics-" + time + ".txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("# " + time + "\n");
+            writer.write(getSummary());
+        }
+        return file;
+    }
+}
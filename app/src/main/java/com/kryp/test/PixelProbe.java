@@ -0,0 +1,81 @@
+package com.kryp.test;
+
+import java.util.Locale;
+
+/**
+ * 取色点
+ * 检查屏幕上某一点的颜色是否在容差范围内。多个取色点可以按“全部满足”或“任一满足”组合成一个触发条件，
+ * 直接在截图上读取几个像素即可判定，不需要裁剪和 OCR，适合按钮变色、进度条填满这类状态变化。
+ * 本类不依赖 Android API。
+ */
+public class PixelProbe {
+    // 默认单通道容差
+    public static final int DEFAULT_TOLERANCE = 16;
+    // 取色点不在截图范围内时记录的像素值；截图像素总是不透明的，不会与之混淆
+    public static final int MISSING = 0;
+    // 一个状态最多的取色点数，判定结果按位记录在一个 long 中
+    public static final int MAX_PROBES = 64;
+
+    // 屏幕坐标
+    public final int x;
+    public final int y;
+    // 期望颜色 (RGB)
+    public final int color;
+    public final int tolerance;
+
+    public PixelProbe(int x, int y, int color, int tolerance) {
+        this.x = x;
+        this.y = y;
+        this.color = color & 0xFFFFFF;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * 像素颜色是否在容差范围内，忽略透明度
+     */
+    public boolean matches(int pixel) {
+        return Math.abs(((pixel >> 16) & 0xFF) - ((color >> 16) & 0xFF)) <= tolerance
+            && Math.abs(((pixel >> 8) & 0xFF) - ((color >> 8) & 0xFF)) <= tolerance
+            && Math.abs((pixel & 0xFF) - (color & 0xFF)) <= tolerance;
+    }
+
+    /**
+     * 像素是否满足取色点，MISSING 视为不满足
+     */
+    public boolean matchesPixel(int pixel) {
+        return pixel != MISSING && matches(pixel);
+    }
+
+    /**
+     * 组合判定
+     * @param matched 各取色点是否满足，第 offset + i 位对应组合中第 i 个取色点
+     * @param offset 组合中第一个取色点的位置
+     * @param count 组合中的取色点数
+     * @param matchAll true 表示全部满足，false 表示任一满足
+     * @return 成立时返回用于定位的取色点序号（全部满足时为第一个，任一满足时为第一个满足的），不成立返回 -1
+     */
+    public static int evaluate(long matched, int offset, int count, boolean matchAll) {
+        if (count <= 0) {
+            return -1;
+        }
+        long mask = (count >= MAX_PROBES ? -1L : (1L << count) - 1) << offset;
+        long bits = matched & mask;
+        if (matchAll) {
+            return bits == mask ? 0 : -1;
+        }
+        return bits == 0 ? -1 : Long.numberOfTrailingZeros(bits) - offset;
+    }
+
+    /**
+     * 规则 JSON 中的写法，用于取色后复制到剪贴板
+     */
+    public String toJson() {
+        return String.format(Locale.US, "{\"x\": %d, \"y\": %d, \"color\": \"#%06X\", \"tolerance\": %d}",
+            x, y, color, tolerance);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "(%d, %d) #%06X ±%d", x, y, color, tolerance);
+    }
+}
@@ -0,0 +1,345 @@
+package com.kryp.test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.PixelFormat;
+import android.hardware.display.DisplayManager;
+import android.hardware.display.VirtualDisplay;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.projection.MediaProjection;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Display;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 基于 MediaProjection 的连续截图源
+ * 通过 VirtualDisplay 将屏幕内容持续渲染到 ImageReader，ImageReader 内部是一个小的图像环形缓冲，
+ * 始终只持有最新一帧；截图时直接从最新一帧复制像素，不需要启动任何进程。
+ * 虚拟显示器可以按比例缩小，只为 OCR 实际需要的分辨率付出代价；屏幕旋转时自动调整尺寸。
+ */
+public class ProjectionCapture {
+    private static final String TAG = "ProjectionCapture";
+    private static final String DISPLAY_NAME = "kryp-capture";
+    // ImageReader 环形缓冲中的图像数量
+    private static final int MAX_IMAGES = 3;
+    // 等待第一帧的最长时间
+    private static final long FIRST_FRAME_TIMEOUT_MS = 500;
+
+    private static ProjectionCapture instance;
+
+    private final Object lock = new Object();
+
+    private Context context;
+    private MediaProjection projection;
+    private VirtualDisplay virtualDisplay;
+    private ImageReader imageReader;
+    private HandlerThread thread;
+    private Handler handler;
+    private DisplayManager.DisplayListener displayListener;
+
+    private float scale = 1.0f;
+    private int width;
+    private int height;
+    private Image latestImage;
+    private long frameSequence;
+    private ByteBuffer packedBuffer;
+
+    private ProjectionCapture() {
+    }
+
+    /**
+     * 获取全局实例
+     */
+    public static synchronized ProjectionCapture getInstance() {
+        if (instance == null) {
+            instance = new ProjectionCapture();
+        }
+        return instance;
+    }
+
+    /**
+     * 开始连续截图
+     * @param context Context
+     * @param mediaProjection 已授权的 MediaProjection
+     * @param scale 虚拟显示器相对屏幕的缩放比例 (0.0 - 1.0]
+     */
+    public void start(Context context, MediaProjection mediaProjection, float scale) {
+        stop();
+        synchronized (lock) {
+            this.context = context.getApplicationContext();
+            this.projection = mediaProjection;
+            this.scale = (scale > 0 && scale <= 1) ? scale : 1.0f;
+
+            thread = new HandlerThread("projection-capture");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+
+            // Android 14 起必须在创建 VirtualDisplay 之前注册回调
+            // 回调可能在重新 start() 之后才到达，只有结束的正是当前投影时才停止
+            projection.registerCallback(new MediaProjection.Callback() {
+                @Override
+                public void onStop() {
+                    synchronized (lock) {
+                        if (projection != mediaProjection) {
+                            Log.d(TAG, "已被替换的 MediaProjection 结束，忽略");
+                            return;
+                        }
+                        Log.d(TAG, "MediaProjection 已结束");
+                        stop();
+                    }
+                }
+            }, handler);
+
+            DisplayMetrics metrics = getRealMetrics();
+            width = scaled(metrics.widthPixels);
+            height = scaled(metrics.heightPixels);
+            imageReader = createImageReader(width, height);
+            virtualDisplay = projection.createVirtualDisplay(DISPLAY_NAME, width, height,
+                metrics.densityDpi, DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
+                imageReader.getSurface(), null, handler);
+
+            displayListener = new DisplayManager.DisplayListener() {
+                @Override
+                public void onDisplayAdded(int displayId) {
+                }
+
+                @Override
+                public void onDisplayRemoved(int displayId) {
+                }
+
+                @Override
+                public void onDisplayChanged(int displayId) {
+                    if (displayId == Display.DEFAULT_DISPLAY) {
+                        onDisplayGeometryChanged();
+                    }
+                }
+            };
+            getDisplayManager().registerDisplayListener(displayListener, handler);
+            Log.d(TAG, "连续截图已启动: " + width + "x" + height + ", 缩放 " + this.scale);
+        }
+    }
+
+    /**
+     * 停止连续截图并释放资源
+     */
+    public void stop() {
+        synchronized (lock) {
+            if (displayListener != null) {
+                getDisplayManager().unregisterDisplayListener(displayListener);
+                displayListener = null;
+            }
+            if (virtualDisplay != null) {
+                virtualDisplay.release();
+                virtualDisplay = null;
+            }
+            if (latestImage != null) {
+                latestImage.close();
+                latestImage = null;
+            }
+            if (imageReader != null) {
+                imageReader.close();
+                imageReader = null;
+            }
+            if (projection != null) {
+                MediaProjection p = projection;
+                projection = null;
+                p.stop();
+            }
+            if (thread != null) {
+                thread.quitSafely();
+                thread = null;
+                handler = null;
+            }
+        }
+    }
+
+    /**
+     * 是否正在截图
+     */
+    public boolean isActive() {
+        synchronized (lock) {
+            return virtualDisplay != null;
+        }
+    }
+
+    /**
+     * 虚拟显示器相对屏幕的缩放比例
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * 虚拟显示器当前尺寸 {宽, 高}
+     * @return 未在截图时返回 null
+     */
+    public int[] getFrameSize() {
+        synchronized (lock) {
+            return virtualDisplay != null ? new int[]{width, height} : null;
+        }
+    }
+
+    /**
+     * 已收到的帧序号，画面静止时不会增加
+     */
+    public long getFrameSequence() {
+        synchronized (lock) {
+            return frameSequence;
+        }
+    }
+
+    /**
+     * 复制最新一帧
+     * @param reuse 可复用的 Bitmap，尺寸匹配时直接写入，可为 null
+     * @return 截图 Bitmap，尚未收到任何帧或未启动时返回 null
+     */
+    public Bitmap acquireFrame(Bitmap reuse) {
+        synchronized (lock) {
+            if (virtualDisplay == null) {
+                Log.e(TAG, "连续截图未启动");
+                return null;
+            }
+            long deadline = System.currentTimeMillis() + FIRST_FRAME_TIMEOUT_MS;
+            while (latestImage == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    Log.e(TAG, "等待第一帧超时");
+                    return null;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return copyImage(latestImage, reuse);
+        }
+    }
+
+    private ImageReader createImageReader(int w, int h) {
+        ImageReader reader = ImageReader.newInstance(w, h, PixelFormat.RGBA_8888, MAX_IMAGES);
+        reader.setOnImageAvailableListener(this::onImageAvailable, handler);
+        return reader;
+    }
+
+    /**
+     * 新帧到达：只保留最新一帧，及时归还旧图像给环形缓冲
+     */
+    private void onImageAvailable(ImageReader reader) {
+        Image image;
+        try {
+            image = reader.acquireLatestImage();
+        } catch (Exception e) {
+            Log.e(TAG, "获取图像失败", e);
+            return;
+        }
+        if (image == null) {
+            return;
+        }
+        synchronized (lock) {
+            if (reader != imageReader) {
+                // 旋转后已切换到新的 ImageReader
+                image.close();
+                return;
+            }
+            if (latestImage != null) {
+                latestImage.close();
+            }
+            latestImage = image;
+            frameSequence++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 屏幕旋转或分辨率变化：按新方向重建 ImageReader 并调整虚拟显示器尺寸
+     */
+    private void onDisplayGeometryChanged() {
+        synchronized (lock) {
+            if (virtualDisplay == null) {
+                return;
+            }
+            DisplayMetrics metrics = getRealMetrics();
+            int newWidth = scaled(metrics.widthPixels);
+            int newHeight = scaled(metrics.heightPixels);
+            if (newWidth == width && newHeight == height) {
+                return;
+            }
+            ImageReader oldReader = imageReader;
+            width = newWidth;
+            height = newHeight;
+            imageReader = createImageReader(width, height);
+            virtualDisplay.resize(width, height, metrics.densityDpi);
+            virtualDisplay.setSurface(imageReader.getSurface());
+            if (latestImage != null) {
+                latestImage.close();
+                latestImage = null;
+            }
+            oldReader.close();
+            Log.d(TAG, "屏幕尺寸变化，虚拟显示器调整为 " + width + "x" + height);
+        }
+    }
+
+    /**
+     * 将图像复制到 Bitmap，处理行尾填充
+     */
+    private Bitmap copyImage(Image image, Bitmap reuse) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer buffer = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        int rowBytes = w * plane.getPixelStride();
+
+        Bitmap bitmap;
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable()
+                && reuse.getWidth() == w && reuse.getHeight() == h
+                && reuse.getConfig() == Bitmap.Config.ARGB_8888) {
+            bitmap = reuse;
+        } else {
+            bitmap = BitmapPool.getInstance().acquire(w, h);
+        }
+
+        buffer.rewind();
+        if (rowStride == rowBytes) {
+            bitmap.copyPixelsFromBuffer(buffer);
+        } else {
+            // 去掉每行末尾的对齐填充
+            int size = rowBytes * h;
+            if (packedBuffer == null || packedBuffer.capacity() < size) {
+                packedBuffer = ByteBuffer.allocateDirect(size);
+            }
+            packedBuffer.clear();
+            for (int y = 0; y < h; y++) {
+                buffer.limit(y * rowStride + rowBytes);
+                buffer.position(y * rowStride);
+                packedBuffer.put(buffer);
+            }
+            buffer.clear();
+            packedBuffer.flip();
+            bitmap.copyPixelsFromBuffer(packedBuffer);
+        }
+        return bitmap;
+    }
+
+    private int scaled(int size) {
+        // 保持偶数尺寸，部分设备的编码器对奇数尺寸处理不正确
+        return Math.max(2, ((int) (size * scale)) & ~1);
+    }
+
+    private DisplayManager getDisplayManager() {
+        return (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    }
+
+    private DisplayMetrics getRealMetrics() {
+        DisplayMetrics metrics = new DisplayMetrics();
+        getDisplayManager().getDisplay(Display.DEFAULT_DISPLAY).getRealMetrics(metrics);
+        return metrics;
+    }
+}
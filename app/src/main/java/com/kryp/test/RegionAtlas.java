@@ -0,0 +1,135 @@
+package com.kryp.test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 多区域拼图布局
+ * 把同一帧中需要识别的多个区域按货架算法排进一张图片，只做一次 OCR，
+ * 再按识别框的中心点把结果分回各区域。区域之间和四周留出间距，避免识别器把相邻区域的文字连成一行。
+ * 本类只计算布局，不依赖 Android API。
+ */
+public class RegionAtlas {
+    // 默认间距（像素）
+    public static final int DEFAULT_SPACING = 32;
+    // 拼图宽高上限，超过时不拼图，逐个识别
+    public static final int MAX_SIZE = 4096;
+
+    private final int[] x;
+    private final int[] y;
+    private final int[] widths;
+    private final int[] heights;
+    private final int width;
+    private final int height;
+    private final int spacing;
+
+    private RegionAtlas(int[] x, int[] y, int[] widths, int[] heights, int width, int height, int spacing) {
+        this.x = x;
+        this.y = y;
+        this.widths = widths;
+        this.heights = heights;
+        this.width = width;
+        this.height = height;
+        this.spacing = spacing;
+    }
+
+    /**
+     * 计算布局
+     * 按高度从高到低逐行摆放，行宽取能容纳最宽区域、且使整体接近正方形的宽度
+     * @param widths 各区域宽度
+     * @param heights 各区域高度
+     * @param spacing 间距
+     * @return 布局，区域为空或拼图超过 MAX_SIZE 时返回 null
+     */
+    public static RegionAtlas pack(int[] widths, int[] heights, int spacing) {
+        int count = widths.length;
+        if (count == 0) {
+            return null;
+        }
+        long area = 0;
+        int widest = 0;
+        for (int i = 0; i < count; i++) {
+            area += (long) (widths[i] + spacing) * (heights[i] + spacing);
+            widest = Math.max(widest, widths[i]);
+        }
+        int shelfWidth = Math.max(widest + 2 * spacing, (int) Math.ceil(Math.sqrt(area)) + spacing);
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // 按高度从高到低排列；Comparator 的默认方法在 API 24 才可用，这里直接比较
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return heights[b] - heights[a];
+            }
+        });
+
+        int[] x = new int[count];
+        int[] y = new int[count];
+        int cursorX = spacing;
+        int shelfTop = spacing;
+        int shelfHeight = 0;
+        int usedWidth = 0;
+        for (int i : order) {
+            if (cursorX > spacing && cursorX + widths[i] + spacing > shelfWidth) {
+                shelfTop += shelfHeight + spacing;
+                cursorX = spacing;
+                shelfHeight = 0;
+            }
+            x[i] = cursorX;
+            y[i] = shelfTop;
+            cursorX += widths[i] + spacing;
+            shelfHeight = Math.max(shelfHeight, heights[i]);
+            usedWidth = Math.max(usedWidth, cursorX);
+        }
+        int atlasHeight = shelfTop + shelfHeight + spacing;
+        if (usedWidth > MAX_SIZE || atlasHeight > MAX_SIZE) {
+            return null;
+        }
+        return new RegionAtlas(x, y, widths.clone(), heights.clone(), usedWidth, atlasHeight, spacing);
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 第 index 个区域在拼图中的左边界
+     */
+    public int getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * 第 index 个区域在拼图中的上边界
+     */
+    public int getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * 拼图中某点属于哪个区域
+     * 识别框可能略微超出区域，区域四周各算上一半间距
+     * @return 区域序号，落在间隔中时返回 -1
+     */
+    public int locate(float px, float py) {
+        float margin = spacing / 2f;
+        for (int i = 0; i < x.length; i++) {
+            if (px >= x[i] - margin && px < x[i] + widths[i] + margin
+                    && py >= y[i] - margin && py < y[i] + heights[i] + margin) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
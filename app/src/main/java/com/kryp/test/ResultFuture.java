@@ -0,0 +1,137 @@
+package com.kryp.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 可由外部设置结果的 Future
+ * java.util.concurrent.CompletableFuture 在 API 24 才加入，minSdk 19 上不可用，异步接口统一返回本类。
+ * 只有第一次 complete / completeExceptionally / cancel 生效，结束后依次执行已登记的回调。
+ * 本类不依赖 Android API，是线程安全的。
+ */
+public class ResultFuture<T> implements Future<T> {
+    private T result;
+    private Throwable error;
+    private boolean done;
+    private boolean cancelled;
+    private List<Runnable> listeners = new ArrayList<>();
+
+    /**
+     * 以结果结束
+     * @return 本次调用使 Future 结束时返回 true，已经结束时返回 false
+     */
+    public boolean complete(T value) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            result = value;
+            done = true;
+            notifyAll();
+        }
+        runListeners();
+        return true;
+    }
+
+    /**
+     * 以异常结束，get() 抛出以其为 cause 的 ExecutionException
+     * @return 本次调用使 Future 结束时返回 true，已经结束时返回 false
+     */
+    public boolean completeExceptionally(Throwable throwable) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            error = throwable;
+            done = true;
+            notifyAll();
+        }
+        runListeners();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            done = true;
+            notifyAll();
+        }
+        runListeners();
+        return true;
+    }
+
+    /**
+     * 登记结束时的回调，已经结束时立即在当前线程执行
+     */
+    public void addListener(Runnable listener) {
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    private T report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return result;
+    }
+
+    private void runListeners() {
+        List<Runnable> pending;
+        synchronized (this) {
+            pending = listeners;
+            listeners = null;
+        }
+        for (Runnable listener : pending) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.kryp.test;
+
+import android.graphics.Color;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 规则集
+ * 由若干状态组成的声明式状态机。每个状态只关注自己的几个屏幕区域，
+ * 按顺序检查其中的规则，第一条触发条件成立的规则执行它的动作（点击、点击识别到的文字、滑动、等待、停止、切换状态）。
+ * 规则集以 JSON 保存在 ClickerPrefs 中，未配置时使用与旧版行为一致的默认规则。
+ *
+ * JSON 格式示例：
+ * <pre>
+ * {
+ *   "initial": "main",
+ *   "states": [{
+ *     "name": "main",
+ *     "regions": [{"name": "top", "unit": "ratio", "left": 0, "top": 0, "right": 1, "bottom": 0.3}],
+ *     "rules": [
+ *       {"name": "自动点击", "trigger": {"type": "text", "region": "top", "keywords": ["自动"]},
+ *        "actions": [{"type": "tap", "x": 540, "y": 1200}]},
+ *       {"name": "进行中停止", "trigger": {"type": "text", "region": "top", "keywords": ["进行中"]},
+ *        "actions": [{"type": "stop"}]},
+ *       {"name": "模板点击", "trigger": {"type": "template", "region": "top", "template": "template-20240101-120000",
+ *        "threshold": 0.85, "keywords": ["自动"]}, "actions": [{"type": "tap_text"}]},
+ *       {"name": "按钮变绿", "trigger": {"type": "pixel", "match": "all", "probes": [
+ *          {"x": 540, "y": 1200, "color": "#4CAF50", "tolerance": 16},
+ *          {"x": 700, "y": 1200, "color": "#4CAF50"}]}, "actions": [{"type": "tap_text"}]}
+ *     ]
+ *   }]
+ * }
+ * </pre>
+ */
+public class RuleSet {
+    /**
+     * 触发条件类型
+     */
+    public enum TriggerType {
+        TEXT,     // 区域内识别到任一关键字
+        PIXEL,    // 屏幕上若干取色点的颜色全部（或任一）在容差范围内
+        TEMPLATE  // 区域内匹配到模板图片
+    }
+
+    /**
+     * 动作类型
+     */
+    public enum ActionType {
+        TAP,      // 点击固定位置
+        TAP_TEXT, // 点击触发条件识别到的文字
+        SWIPE,    // 滑动
+        WAIT,     // 等待
+        STOP,     // 停止运行
+        GOTO      // 切换到其他状态
+    }
+
+    /**
+     * 监视区域
+     * 像素单位的坐标为屏幕坐标
+     */
+    public static class Region {
+        public final String name;
+        public final FrameRegion bounds;
+        // 是否有触发条件需要对该区域做 OCR
+        boolean needsOcr;
+        // 是否有模板触发条件
+        boolean hasTemplate;
+
+        public Region(String name, FrameRegion bounds) {
+            this.name = name;
+            this.bounds = bounds;
+        }
+
+        public boolean needsOcr() {
+            return needsOcr;
+        }
+
+        public boolean hasTemplate() {
+            return hasTemplate;
+        }
+    }
+
+    /**
+     * 触发条件
+     */
+    public static class Trigger {
+        public final TriggerType type;
+        // TEXT、TEMPLATE：所在区域名称
+        public String region;
+        // TEXT：关键字列表；TEMPLATE：可选，匹配得分处于模糊区间时改用 OCR 按关键字判定
+        public List<String> keywords = Collections.emptyList();
+        // PIXEL：取色点，以及全部满足 (match: all) 还是任一满足 (match: any) 时触发
+        public List<PixelProbe> probes = Collections.emptyList();
+        public boolean matchAll = true;
+        // 第一个取色点在所属状态 getProbes() 中的位置
+        int probeOffset;
+        // TEMPLATE：模板名称（TemplateLibrary）或图片路径、匹配阈值，
+        // 以及阈值以下多大范围内视为模糊
+        public String template;
+        public float threshold;
+        public float ambiguity;
+
+        private KeywordMatcher matcher;
+
+        public Trigger(TriggerType type) {
+            this.type = type;
+        }
+
+        public int getProbeOffset() {
+            return probeOffset;
+        }
+
+        /**
+         * 关键字匹配器，首次使用时构建
+         */
+        public synchronized KeywordMatcher getMatcher() {
+            if (matcher == null) {
+                matcher = new KeywordMatcher(keywords);
+            }
+            return matcher;
+        }
+    }
+
+    /**
+     * 动作
+     */
+    public static class Action {
+        public final ActionType type;
+        // TAP 的坐标，SWIPE 的起点
+        public int x;
+        public int y;
+        // SWIPE 的终点
+        public int x2;
+        public int y2;
+        // SWIPE 的滑动时长，WAIT 的等待时长
+        public long durationMs;
+        // GOTO 的目标状态
+        public String state;
+
+        public Action(ActionType type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * 规则
+     */
+    public static class Rule {
+        public final String name;
+        public final Trigger trigger;
+        public final List<Action> actions;
+
+        public Rule(String name, Trigger trigger, List<Action> actions) {
+            this.name = name;
+            this.trigger = trigger;
+            this.actions = actions;
+        }
+
+        /**
+         * 是否包含不能丢弃的动作（停止、切换状态）
+         */
+        public boolean isCritical() {
+            for (Action action : actions) {
+                if (action.type == ActionType.STOP || action.type == ActionType.GOTO) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 是否包含点击或滑动
+         */
+        public boolean hasGesture() {
+            for (Action action : actions) {
+                if (action.type == ActionType.TAP || action.type == ActionType.TAP_TEXT
+                        || action.type == ActionType.SWIPE) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 状态
+     */
+    public static class State {
+        public final String name;
+        public final List<Region> regions;
+        public final List<Rule> rules;
+        final List<PixelProbe> probes = new ArrayList<>();
+
+        public State(String name, List<Region> regions, List<Rule> rules) {
+            this.name = name;
+            this.regions = regions;
+            this.rules = rules;
+        }
+
+        public Region findRegion(String regionName) {
+            for (Region region : regions) {
+                if (region.name.equals(regionName)) {
+                    return region;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 所有取色触发条件的取色点，截图阶段按此顺序读取像素
+         */
+        public List<PixelProbe> getProbes() {
+            return probes;
+        }
+
+        /**
+         * 覆盖所有区域和取色点的最小区域，区域单位不一致（比例区域与取色点混用）时返回 null
+         */
+        public FrameRegion getBounds() {
+            FrameRegion union = null;
+            for (Region region : regions) {
+                union = union == null ? region.bounds : union.union(region.bounds);
+                if (union == null) {
+                    return null;
+                }
+            }
+            for (PixelProbe probe : probes) {
+                FrameRegion point = FrameRegion.ofPixels(probe.x, probe.y, probe.x + 1, probe.y + 1);
+                union = union == null ? point : union.union(point);
+                if (union == null) {
+                    return null;
+                }
+            }
+            return union;
+        }
+    }
+
+    public final List<State> states;
+    private final Map<String, State> statesByName = new HashMap<>();
+    private final String initialState;
+
+    public RuleSet(List<State> states, String initialState) {
+        this.states = states;
+        for (State state : states) {
+            statesByName.put(state.name, state);
+        }
+        this.initialState = initialState;
+    }
+
+    public State getState(String name) {
+        return statesByName.get(name);
+    }
+
+    public State getInitialState() {
+        State state = statesByName.get(initialState);
+        return state != null ? state : states.get(0);
+    }
+
+    /**
+     * 默认规则：顶部 30% 区域出现"自动"时点击目标位置，出现"进行中"时停止
+     */
+    public static RuleSet createDefault(int targetX, int targetY) {
+        Region top = new Region("top", FrameRegion.topRatio(0.3f));
+        top.needsOcr = true;
+
+        Trigger autoTrigger = new Trigger(TriggerType.TEXT);
+        autoTrigger.region = top.name;
+        autoTrigger.keywords = Collections.singletonList("自动");
+        Action tap = new Action(ActionType.TAP);
+        tap.x = targetX;
+        tap.y = targetY;
+
+        Trigger runningTrigger = new Trigger(TriggerType.TEXT);
+        runningTrigger.region = top.name;
+        runningTrigger.keywords = Collections.singletonList("进行中");
+
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new Rule("自动点击", autoTrigger, Collections.singletonList(tap)));
+        rules.add(new Rule("进行中停止", runningTrigger,
+            Collections.singletonList(new Action(ActionType.STOP))));
+
+        State main = new State("main", Collections.singletonList(top), rules);
+        return new RuleSet(Collections.singletonList(main), main.name);
+    }
+
+    /**
+     * 从 JSON 解析规则集
+     * @throws JSONException 格式错误或引用了不存在的区域、状态
+     */
+    public static RuleSet fromJson(String json) throws JSONException {
+        JSONObject root = new JSONObject(json);
+        JSONArray statesJson = root.getJSONArray("states");
+        if (statesJson.length() == 0) {
+            throw new JSONException("至少需要一个状态");
+        }
+        List<State> states = new ArrayList<>();
+        for (int i = 0; i < statesJson.length(); i++) {
+            states.add(parseState(statesJson.getJSONObject(i)));
+        }
+        RuleSet ruleSet = new RuleSet(states, root.optString("initial", states.get(0).name));
+        if (ruleSet.getState(ruleSet.initialState) == null) {
+            throw new JSONException("初始状态不存在: " + ruleSet.initialState);
+        }
+        ruleSet.link();
+        return ruleSet;
+    }
+
+    /**
+     * 检查区域和状态引用，标记需要 OCR 的区域，并收集各状态的取色点
+     */
+    private void link() throws JSONException {
+        for (State state : states) {
+            for (Rule rule : state.rules) {
+                Trigger trigger = rule.trigger;
+                if (trigger.type == TriggerType.PIXEL) {
+                    trigger.probeOffset = state.probes.size();
+                    state.probes.addAll(trigger.probes);
+                    if (state.probes.size() > PixelProbe.MAX_PROBES) {
+                        throw new JSONException("状态 " + state.name + " 的取色点超过 " + PixelProbe.MAX_PROBES + " 个");
+                    }
+                } else {
+                    Region region = state.findRegion(trigger.region);
+                    if (region == null) {
+                        throw new JSONException("状态 " + state.name + " 中不存在区域: " + trigger.region);
+                    }
+                    if (trigger.type == TriggerType.TEXT) {
+                        region.needsOcr = true;
+                    } else if (trigger.type == TriggerType.TEMPLATE) {
+                        region.hasTemplate = true;
+                    }
+                }
+                for (Action action : rule.actions) {
+                    if (action.type == ActionType.GOTO && getState(action.state) == null) {
+                        throw new JSONException("规则 " + rule.name + " 切换到不存在的状态: " + action.state);
+                    }
+                }
+            }
+        }
+    }
+
+    private static State parseState(JSONObject json) throws JSONException {
+        String name = json.getString("name");
+        List<Region> regions = new ArrayList<>();
+        JSONArray regionsJson = json.getJSONArray("regions");
+        for (int i = 0; i < regionsJson.length(); i++) {
+            regions.add(parseRegion(regionsJson.getJSONObject(i)));
+        }
+        List<Rule> rules = new ArrayList<>();
+        JSONArray rulesJson = json.getJSONArray("rules");
+        for (int i = 0; i < rulesJson.length(); i++) {
+            JSONObject ruleJson = rulesJson.getJSONObject(i);
+            Trigger trigger = parseTrigger(ruleJson.getJSONObject("trigger"));
+            List<Action> actions = new ArrayList<>();
+            JSONArray actionsJson = ruleJson.getJSONArray("actions");
+            for (int j = 0; j < actionsJson.length(); j++) {
+                actions.add(parseAction(actionsJson.getJSONObject(j)));
+            }
+            rules.add(new Rule(ruleJson.optString("name", name + "#" + i), trigger, actions));
+        }
+        return new State(name, regions, rules);
+    }
+
+    private static Region parseRegion(JSONObject json) throws JSONException {
+        String unit = json.optString("unit", "ratio");
+        FrameRegion bounds;
+        if ("px".equals(unit)) {
+            bounds = FrameRegion.ofPixels(json.getInt("left"), json.getInt("top"),
+                json.getInt("right"), json.getInt("bottom"));
+        } else if ("ratio".equals(unit)) {
+            bounds = FrameRegion.ofRatio((float) json.getDouble("left"), (float) json.getDouble("top"),
+                (float) json.getDouble("right"), (float) json.getDouble("bottom"));
+        } else {
+            throw new JSONException("未知的区域单位: " + unit);
+        }
+        return new Region(json.getString("name"), bounds);
+    }
+
+    private static Trigger parseTrigger(JSONObject json) throws JSONException {
+        TriggerType type = parseEnum(TriggerType.class, json.getString("type"));
+        Trigger trigger = new Trigger(type);
+        switch (type) {
+            case TEXT:
+                trigger.region = json.getString("region");
+                trigger.keywords = parseKeywords(json.getJSONArray("keywords"));
+                break;
+            case PIXEL: {
+                // 兼容单个取色点的写法
+                JSONArray probesJson = json.optJSONArray("probes");
+                List<PixelProbe> probes = new ArrayList<>();
+                if (probesJson == null) {
+                    probes.add(parseProbe(json));
+                } else {
+                    for (int i = 0; i < probesJson.length(); i++) {
+                        probes.add(parseProbe(probesJson.getJSONObject(i)));
+                    }
+                }
+                if (probes.isEmpty()) {
+                    throw new JSONException("取色触发条件至少需要一个取色点");
+                }
+                trigger.probes = probes;
+                String match = json.optString("match", "all");
+                if (!match.equals("all") && !match.equals("any")) {
+                    throw new JSONException("未知的组合方式: " + match);
+                }
+                trigger.matchAll = match.equals("all");
+                break;
+            }
+            case TEMPLATE:
+                trigger.region = json.getString("region");
+                trigger.template = json.getString("template");
+                trigger.threshold = (float) json.optDouble("threshold", 0.8);
+                trigger.ambiguity = (float) json.optDouble("ambiguity", 0.15);
+                JSONArray fallback = json.optJSONArray("keywords");
+                if (fallback != null) {
+                    trigger.keywords = parseKeywords(fallback);
+                }
+                break;
+        }
+        return trigger;
+    }
+
+    private static PixelProbe parseProbe(JSONObject json) throws JSONException {
+        int color;
+        try {
+            color = Color.parseColor(json.getString("color"));
+        } catch (IllegalArgumentException e) {
+            throw new JSONException("颜色格式错误: " + json.getString("color"));
+        }
+        return new PixelProbe(json.getInt("x"), json.getInt("y"), color,
+            json.optInt("tolerance", PixelProbe.DEFAULT_TOLERANCE));
+    }
+
+    private static List<String> parseKeywords(JSONArray json) throws JSONException {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < json.length(); i++) {
+            list.add(json.getString(i));
+        }
+        return list;
+    }
+
+    private static Action parseAction(JSONObject json) throws JSONException {
+        ActionType type = parseEnum(ActionType.class, json.getString("type"));
+        Action action = new Action(type);
+        switch (type) {
+            case TAP:
+                action.x = json.getInt("x");
+                action.y = json.getInt("y");
+                break;
+            case SWIPE:
+                action.x = json.getInt("x1");
+                action.y = json.getInt("y1");
+                action.x2 = json.getInt("x2");
+                action.y2 = json.getInt("y2");
+                action.durationMs = json.optLong("duration", 300);
+                break;
+            case WAIT:
+                action.durationMs = json.getLong("ms");
+                break;
+            case GOTO:
+                action.state = json.getString("state");
+                break;
+            default:
+                break;
+        }
+        return action;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name) throws JSONException {
+        try {
+            return Enum.valueOf(type, name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new JSONException("未知的类型: " + name + "，可选 "
+                + Arrays.toString(type.getEnumConstants()).toLowerCase());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.kryp.test;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.media.projection.MediaProjection;
+import android.media.projection.MediaProjectionManager;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+/**
+ * 屏幕录制前台服务
+ * Android 10 起 MediaProjection 必须在 mediaProjection 类型的前台服务中使用，
+ * 本服务负责持有授权结果并启动 ProjectionCapture
+ */
+public class ScreenCaptureService extends Service {
+    private static final String TAG = "ScreenCaptureService";
+    private static final String CHANNEL_ID = "screen_capture";
+    private static final int NOTIFICATION_ID = 1;
+
+    public static final String EXTRA_RESULT_CODE = "result_code";
+    public static final String EXTRA_RESULT_DATA = "result_data";
+    public static final String EXTRA_SCALE = "scale";
+
+    /**
+     * 启动服务并开始连续截图
+     * @param context Context
+     * @param resultCode 屏幕录制授权的 resultCode
+     * @param data 屏幕录制授权返回的 Intent
+     * @param scale 虚拟显示器缩放比例
+     */
+    public static void start(Context context, int resultCode, Intent data, float scale) {
+        Intent intent = new Intent(context, ScreenCaptureService.class);
+        intent.putExtra(EXTRA_RESULT_CODE, resultCode);
+        intent.putExtra(EXTRA_RESULT_DATA, data);
+        intent.putExtra(EXTRA_SCALE, scale);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent == null) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        startForegroundCompat();
+
+        int resultCode = intent.getIntExtra(EXTRA_RESULT_CODE, 0);
+        Intent data = intent.getParcelableExtra(EXTRA_RESULT_DATA);
+        float scale = intent.getFloatExtra(EXTRA_SCALE, 1.0f);
+        if (data == null) {
+            Log.e(TAG, "缺少屏幕录制授权");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        MediaProjectionManager manager =
+            (MediaProjectionManager) getSystemService(MEDIA_PROJECTION_SERVICE);
+        MediaProjection projection = manager.getMediaProjection(resultCode, data);
+        if (projection == null) {
+            Log.e(TAG, "获取 MediaProjection 失败");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        ProjectionCapture.getInstance().start(this, projection, scale);
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        ProjectionCapture.getInstance().stop();
+        Log.d(TAG, "屏幕录制服务已销毁");
+    }
+
+    /**
+     * 以 mediaProjection 类型进入前台
+     */
+    private void startForegroundCompat() {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager nm = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            nm.createNotificationChannel(new NotificationChannel(
+                CHANNEL_ID, "屏幕录制", NotificationManager.IMPORTANCE_LOW));
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+        Notification notification = builder
+            .setSmallIcon(R.drawable.ic_launcher)
+            .setContentTitle(getString(R.string.app_name))
+            .setContentText("正在录制屏幕用于文字识别")
+            .build();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification,
+                ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+}
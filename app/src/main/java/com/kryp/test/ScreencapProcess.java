@@ -0,0 +1,96 @@
+package com.kryp.test;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 Shizuku 启动的 screencap 进程
+ * 输出经由远程进程的 ParcelFileDescriptor 流式读取，调用方可以边读边解码；
+ * 超过时限仍未关闭时由看门狗强制结束进程，正在阻塞的读取随之返回。
+ * 用 try-with-resources 保证流关闭、进程结束。
+ */
+public class ScreencapProcess implements Closeable {
+    private static final String TAG = "ScreencapProcess";
+    private static final String SCREENCAP = "/system/bin/screencap";
+    // 默认截图时限
+    public static final long DEFAULT_TIMEOUT_MS = 3000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "screencap-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Process process;
+    private final InputStream input;
+    private final ScheduledFuture<?> timeout;
+    private volatile boolean timedOut;
+    private boolean closed;
+
+    private ScreencapProcess(Process process, long timeoutMs) {
+        this.process = process;
+        this.input = new BufferedInputStream(process.getInputStream(), BUFFER_SIZE);
+        this.timeout = watchdog.schedule(() -> {
+            timedOut = true;
+            Log.e(TAG, "截图超时 (" + timeoutMs + "ms)，结束进程");
+            process.destroy();
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 启动截图进程
+     * @param png true 输出 PNG，false 输出原始帧缓冲
+     * @param timeoutMs 时限（毫秒）
+     * @return 截图进程，Shizuku 不可用时返回 null
+     */
+    public static ScreencapProcess start(boolean png, long timeoutMs) {
+        Process process = ShizukuHelper.newProcess(png
+            ? new String[]{SCREENCAP, "-p"}
+            : new String[]{SCREENCAP});
+        if (process == null) {
+            return null;
+        }
+        return new ScreencapProcess(process, timeoutMs);
+    }
+
+    /**
+     * 截图输出流
+     */
+    public InputStream getInputStream() {
+        return input;
+    }
+
+    /**
+     * 是否因超时被强制结束
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * 取消看门狗、关闭输出流并结束进程
+     * 剩余输出不再读取，区域解码提前完成时直接结束进程
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        timeout.cancel(false);
+        try {
+            input.close();
+        } catch (IOException ignored) {
+        }
+        process.destroy();
+    }
+}
@@ -2,29 +2,69 @@ package com.kryp.test;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.os.Build;
 import android.util.Log;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * 截图辅助类
- * 支持两种截图方式：保存图片文件、管道传输
+ * 支持五种截图方式：保存图片文件、管道传输、原始帧缓冲、屏幕录制、特权进程共享内存
+ * 截图和裁剪结果都从 BitmapPool 中取用，用完后应通过 releaseBitmap() 归还
  */
 public class ScreenshotHelper {
     private static final String TAG = "ScreenshotHelper";
     private static final String SCREENSHOT_PATH = "/sdcard/tmp/screenshot.png";
     
+    // screencap 原始输出的像素格式（对应 android PixelFormat）
+    private static final int RAW_FORMAT_RGBA_8888 = 1;
+    private static final int RAW_FORMAT_RGBX_8888 = 2;
+    // 原始输出头部：宽、高、格式各 4 字节，新版本系统还会追加 4 字节色彩空间
+    private static final int RAW_HEADER_SIZE = 12;
+    
+    // RAW 模式复用的读取缓冲区
+    private static byte[] readBuffer = new byte[0];
+    
+    // 上一次管道截图的尺寸，用于在读取数据之前准备好可复用的 Bitmap
+    private static int lastPipeWidth;
+    private static int lastPipeHeight;
+    
+    // 复用的解码参数和裁剪画布
+    private static final BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+    private static final Canvas cropCanvas = new Canvas();
+    private static final Rect cropSrc = new Rect();
+    private static final Rect cropDst = new Rect();
+    // 池中的 Bitmap 还留着上一次的像素，复制时直接覆盖而不是混合
+    private static final Paint cropPaint = new Paint();
+    static {
+        cropPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+    
+    // 区域截图使用的流式解码器
+    private static final StreamingFrameDecoder regionDecoder = new StreamingFrameDecoder();
+    
     /**
      * 截图方式枚举
      */
     public enum ScreenshotMode {
         FILE,      // 保存到文件
-        PIPE       // 管道传输
+        PIPE,      // 管道传输
+        RAW,       // 原始帧缓冲（不经过 PNG 编解码）
+        PROJECTION, // 屏幕录制（MediaProjection 连续截图）
+        SHARED_MEMORY // 特权截图服务写入共享内存（不可用时退回原始帧缓冲）
     }
 
     /**
@@ -33,13 +73,52 @@ public class ScreenshotHelper {
      * @return 截图 Bitmap，失败返回 null
      */
     public static Bitmap captureScreen(ScreenshotMode mode) {
+        return captureScreen(mode, null);
+    }
+
+    /**
+     * 获取屏幕截图，尽量复用传入的 Bitmap
+     * RAW 和 PROJECTION 模式会复用；若返回值与 reuse 不是同一个对象，reuse 仍归调用方处理
+     * @param mode 截图方式
+     * @param reuse 可复用的 Bitmap，可为 null
+     * @return 截图 Bitmap，失败返回 null
+     */
+    public static Bitmap captureScreen(ScreenshotMode mode, Bitmap reuse) {
+        long start = System.nanoTime();
+        Bitmap bitmap;
         switch (mode) {
             case FILE:
-                return captureScreenToFile();
+                bitmap = captureScreenToFile();
+                break;
+            case RAW:
+                bitmap = captureScreenRaw(reuse);
+                break;
+            case PROJECTION:
+                bitmap = ProjectionCapture.getInstance().acquireFrame(reuse);
+                break;
+            case SHARED_MEMORY:
+                bitmap = SharedFrameClient.getInstance().acquireFrame(reuse);
+                if (bitmap == null) {
+                    bitmap = captureScreenRaw(reuse);
+                }
+                break;
             case PIPE:
-                return captureScreenByPipe();
             default:
-                return captureScreenByPipe();
+                bitmap = captureScreenByPipe();
+                break;
+        }
+        recordCapture(start, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 记录截图耗时，失败计入错误次数
+     */
+    private static void recordCapture(long startNanos, Bitmap result) {
+        if (result != null) {
+            PipelineMetrics.record(PipelineMetrics.Stage.CAPTURE, startNanos);
+        } else {
+            PipelineMetrics.recordError(PipelineMetrics.Stage.CAPTURE);
         }
     }
 
@@ -48,7 +127,7 @@ public class ScreenshotHelper {
      * 将截图保存到 /sdcard/tmp/screenshot.png
      * @return 截图 Bitmap，失败返回 null
      */
-    public static Bitmap captureScreenToFile() {
+    public static synchronized Bitmap captureScreenToFile() {
         try {
             // 确保临时目录存在
             ShizukuHelper.createTempDir();
@@ -69,7 +148,7 @@ public class ScreenshotHelper {
                 return null;
             }
             
-            Bitmap bitmap = BitmapFactory.decodeFile(SCREENSHOT_PATH);
+            Bitmap bitmap = decodePooled(null, 0, SCREENSHOT_PATH);
             if (bitmap == null) {
                 Log.e(TAG, "解析截图文件失败");
             }
@@ -83,31 +162,20 @@ public class ScreenshotHelper {
 
     /**
      * 管道方式截图
-     * 直接从 screencap 命令的输出流读取数据
+     * 通过 Shizuku 运行 screencap -p，数据到达时即开始解码，不再先把整个 PNG 读入内存
      * @return 截图 Bitmap，失败返回 null
      */
-    public static Bitmap captureScreenByPipe() {
-        try {
-            Process process = Runtime.getRuntime().exec(new String[]{"sh", "-c", "screencap -p"});
-            
-            DataInputStream dis = new DataInputStream(process.getInputStream());
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = dis.read(buffer)) != -1) {
-                baos.write(buffer, 0, bytesRead);
+    public static synchronized Bitmap captureScreenByPipe() {
+        try (ScreencapProcess process = ScreencapProcess.start(true, ScreencapProcess.DEFAULT_TIMEOUT_MS)) {
+            if (process == null) {
+                Log.e(TAG, "无法启动截图进程");
+                return null;
             }
             
-            dis.close();
-            process.waitFor();
-            process.destroy();
-            
-            byte[] pngData = baos.toByteArray();
-            Bitmap bitmap = BitmapFactory.decodeByteArray(pngData, 0, pngData.length);
+            Bitmap bitmap = decodeStreamPooled(process.getInputStream());
             
             if (bitmap == null) {
-                Log.e(TAG, "管道方式解析截图失败");
+                Log.e(TAG, process.isTimedOut() ? "管道方式截图超时" : "管道方式解析截图失败");
             }
             
             return bitmap;
@@ -117,11 +185,341 @@ public class ScreenshotHelper {
         }
     }
 
+    /**
+     * 原始帧缓冲方式截图
+     * 读取 screencap 不带 -p 参数时输出的未压缩像素（头部 + RGBA 数据），
+     * 通过 copyPixelsFromBuffer 直接载入 Bitmap，省去设备端 PNG 编码和本地解码
+     * @param reuse 可复用的 Bitmap，尺寸和格式匹配时直接写入，可为 null
+     * @return 截图 Bitmap，失败返回 null
+     */
+    public static synchronized Bitmap captureScreenRaw(Bitmap reuse) {
+        try (ScreencapProcess process = ScreencapProcess.start(false, ScreencapProcess.DEFAULT_TIMEOUT_MS)) {
+            if (process == null) {
+                Log.e(TAG, "无法启动截图进程");
+                return null;
+            }
+            
+            int length = readAll(process.getInputStream());
+            if (process.isTimedOut()) {
+                Log.e(TAG, "原始帧缓冲方式截图超时");
+                return null;
+            }
+            return decodeRaw(readBuffer, length, reuse);
+        } catch (Exception e) {
+            Log.e(TAG, "原始帧缓冲方式截图失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 将 screencap 原始输出载入池中的 Bitmap
+     * @param data 原始输出（头部 + RGBA 数据），RGBX 格式时会就地改写 X 通道
+     * @param length 数据长度
+     * @param reuse 可复用的 Bitmap，尺寸和格式匹配时直接写入，可为 null
+     * @return 截图 Bitmap，数据格式不正确时返回 null
+     */
+    static Bitmap decodeRaw(byte[] data, int length, Bitmap reuse) {
+        if (length < RAW_HEADER_SIZE) {
+            Log.e(TAG, "原始截图数据过短: " + length);
+            return null;
+        }
+        
+        ByteBuffer header = ByteBuffer.wrap(data, 0, RAW_HEADER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        int width = header.getInt();
+        int height = header.getInt();
+        int format = header.getInt();
+        if (format != RAW_FORMAT_RGBA_8888 && format != RAW_FORMAT_RGBX_8888) {
+            Log.e(TAG, "不支持的原始像素格式: " + format);
+            return null;
+        }
+        
+        // 根据实际数据长度判断头部是否带有色彩空间字段
+        int pixelBytes = width * height * 4;
+        int offset = length - pixelBytes;
+        if (width <= 0 || height <= 0 || offset < RAW_HEADER_SIZE) {
+            Log.e(TAG, "原始截图数据长度不匹配: " + width + "x" + height + ", " + length);
+            return null;
+        }
+        
+        if (format == RAW_FORMAT_RGBX_8888) {
+            // X 通道内容未定义，强制不透明
+            for (int i = offset + 3; i < length; i += 4) {
+                data[i] = (byte) 0xFF;
+            }
+        }
+        
+        Bitmap bitmap;
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable()
+                && reuse.getWidth() == width && reuse.getHeight() == height
+                && reuse.getConfig() == Bitmap.Config.ARGB_8888) {
+            bitmap = reuse;
+        } else {
+            bitmap = BitmapPool.getInstance().acquire(width, height);
+        }
+        bitmap.copyPixelsFromBuffer(ByteBuffer.wrap(data, offset, pixelBytes));
+        return bitmap;
+    }
+
+    /**
+     * 只截取并解码指定区域
+     * 按行流式解码截图数据，目标区域覆盖的最后一行解码完成后即停止读取并结束截图进程，
+     * 相比先解码整屏再裁剪，解码耗时和内存峰值都随区域高度下降
+     * @param mode 截图方式
+     * @param region 目标区域
+     * @return 区域 Bitmap，失败返回 null
+     */
+    public static Bitmap captureRegion(ScreenshotMode mode, FrameRegion region) {
+        return captureRegion(mode, region, null);
+    }
+
+    /**
+     * 只截取并解码指定区域，并返回区域在整帧中的位置
+     * @param mode 截图方式
+     * @param region 目标区域
+     * @param outBounds 长度为 4 的数组，写入 {整帧宽度, 整帧高度, 区域左边界, 区域上边界}，可为 null
+     * @return 区域 Bitmap，失败返回 null
+     */
+    public static Bitmap captureRegion(ScreenshotMode mode, FrameRegion region, int[] outBounds) {
+        long start = System.nanoTime();
+        Bitmap bitmap = decodeRegion(mode, region, outBounds);
+        recordCapture(start, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 截取并流式解码指定区域
+     */
+    private static synchronized Bitmap decodeRegion(ScreenshotMode mode, FrameRegion region, int[] outBounds) {
+        ScreencapProcess process = null;
+        InputStream is = null;
+        try {
+            StreamingFrameDecoder.DecodedRegion decoded;
+            switch (mode) {
+                case PROJECTION:
+                    // 连续截图已经在内存中，没有可跳过的解码，直接裁剪
+                    return cropProjectionRegion(region, outBounds);
+                case FILE:
+                    ShizukuHelper.createTempDir();
+                    if (ShizukuHelper.exec("screencap -p " + SCREENSHOT_PATH) == null) {
+                        Log.e(TAG, "截图命令执行失败");
+                        return null;
+                    }
+                    is = new FileInputStream(SCREENSHOT_PATH);
+                    decoded = regionDecoder.decodePng(is, region);
+                    break;
+                case SHARED_MEMORY:
+                    Bitmap shared = SharedFrameClient.getInstance().acquireRegion(region, outBounds);
+                    if (shared != null) {
+                        return shared;
+                    }
+                    // 截图服务不可用，退回原始帧缓冲方式
+                case RAW:
+                    process = ScreencapProcess.start(false, ScreencapProcess.DEFAULT_TIMEOUT_MS);
+                    if (process == null) {
+                        Log.e(TAG, "无法启动截图进程");
+                        return null;
+                    }
+                    decoded = regionDecoder.decodeRaw(process.getInputStream(), getRawHeaderSize(), region);
+                    break;
+                case PIPE:
+                default:
+                    process = ScreencapProcess.start(true, ScreencapProcess.DEFAULT_TIMEOUT_MS);
+                    if (process == null) {
+                        Log.e(TAG, "无法启动截图进程");
+                        return null;
+                    }
+                    decoded = regionDecoder.decodePng(process.getInputStream(), region);
+                    break;
+            }
+            
+            if (decoded == null) {
+                Log.e(TAG, "截图区域为空: " + region);
+                return null;
+            }
+            return toPooledBitmap(decoded, outBounds);
+        } catch (Exception e) {
+            if (process != null && process.isTimedOut()) {
+                Log.e(TAG, "区域截图超时");
+            } else {
+                Log.e(TAG, "区域截图失败", e);
+            }
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (Exception ignored) {
+                }
+            }
+            if (process != null) {
+                // 剩余数据不再需要，直接结束截图进程
+                process.close();
+            }
+        }
+    }
+
+    /**
+     * 将流式解码得到的区域像素写入池中的 Bitmap
+     * @param outBounds 长度为 4 的数组，写入 {整帧宽度, 整帧高度, 区域左边界, 区域上边界}，可为 null
+     */
+    static Bitmap toPooledBitmap(StreamingFrameDecoder.DecodedRegion decoded, int[] outBounds) {
+        if (outBounds != null) {
+            outBounds[0] = decoded.frameWidth;
+            outBounds[1] = decoded.frameHeight;
+            outBounds[2] = decoded.left;
+            outBounds[3] = decoded.top;
+        }
+        Bitmap bitmap = BitmapPool.getInstance().acquire(decoded.width, decoded.height);
+        bitmap.setPixels(decoded.pixels, 0, decoded.width, 0, 0, decoded.width, decoded.height);
+        return bitmap;
+    }
+
+    /**
+     * 从最新一帧屏幕录制画面中裁剪区域
+     */
+    private static Bitmap cropProjectionRegion(FrameRegion region, int[] outBounds) {
+        Bitmap frame = ProjectionCapture.getInstance().acquireFrame(null);
+        if (frame == null) {
+            return null;
+        }
+        int[] bounds = region.resolve(frame.getWidth(), frame.getHeight());
+        if (bounds == null) {
+            releaseBitmap(frame);
+            return null;
+        }
+        if (outBounds != null) {
+            outBounds[0] = frame.getWidth();
+            outBounds[1] = frame.getHeight();
+            outBounds[2] = bounds[0];
+            outBounds[3] = bounds[1];
+        }
+        Bitmap crop = cropBitmap(frame, bounds[0], bounds[1], bounds[2] - bounds[0], bounds[3] - bounds[1]);
+        if (crop != frame) {
+            releaseBitmap(frame);
+        }
+        return crop;
+    }
+
+    /**
+     * 将输入流全部读入复用的读取缓冲区
+     * @return 读取的字节数
+     */
+    private static int readAll(InputStream is) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == readBuffer.length) {
+                byte[] grown = new byte[Math.max(readBuffer.length * 2, 1 << 20)];
+                System.arraycopy(readBuffer, 0, grown, 0, length);
+                readBuffer = grown;
+            }
+            int bytesRead = is.read(readBuffer, length, readBuffer.length - length);
+            if (bytesRead == -1) {
+                return length;
+            }
+            length += bytesRead;
+        }
+    }
+
+    /**
+     * 解码 PNG 数据到池中的 Bitmap
+     * 先只解析尺寸，再通过 inBitmap 直接解码进同尺寸的池化 Bitmap
+     * @param data 图片数据，为 null 时从 path 读取
+     * @param length 数据长度
+     * @param path 图片文件路径
+     * @return 解码结果，失败返回 null
+     */
+    private static Bitmap decodePooled(byte[] data, int length, String path) {
+        decodeOptions.inJustDecodeBounds = true;
+        decodeOptions.inBitmap = null;
+        decode(data, length, path);
+        int width = decodeOptions.outWidth;
+        int height = decodeOptions.outHeight;
+        decodeOptions.inJustDecodeBounds = false;
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        
+        Bitmap target = BitmapPool.getInstance().acquire(width, height);
+        decodeOptions.inMutable = true;
+        decodeOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        decodeOptions.inBitmap = target;
+        try {
+            Bitmap bitmap = decode(data, length, path);
+            if (bitmap != target) {
+                releaseBitmap(target);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            // 当前图片无法复用 inBitmap，退回普通解码
+            releaseBitmap(target);
+            decodeOptions.inBitmap = null;
+            return decode(data, length, path);
+        } finally {
+            decodeOptions.inBitmap = null;
+        }
+    }
+
+    /**
+     * 从输出流边读边解码 PNG 到池中的 Bitmap
+     * 数据流只能读取一次，无法先解析尺寸，因此按上一帧的尺寸准备 inBitmap；
+     * 旋转后像素总数不变仍可复用，尺寸变大导致无法复用时放弃本帧，下一帧不再指定 inBitmap
+     * @return 解码结果，失败返回 null
+     */
+    private static Bitmap decodeStreamPooled(InputStream is) {
+        Bitmap target = lastPipeWidth > 0
+            ? BitmapPool.getInstance().acquire(lastPipeWidth, lastPipeHeight) : null;
+        decodeOptions.inJustDecodeBounds = false;
+        decodeOptions.inMutable = true;
+        decodeOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        decodeOptions.inBitmap = target;
+        try {
+            Bitmap bitmap = BitmapFactory.decodeStream(is, null, decodeOptions);
+            if (target != null && bitmap != target) {
+                releaseBitmap(target);
+            }
+            if (bitmap != null) {
+                lastPipeWidth = bitmap.getWidth();
+                lastPipeHeight = bitmap.getHeight();
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "截图尺寸变化，无法复用 Bitmap", e);
+            releaseBitmap(target);
+            lastPipeWidth = 0;
+            lastPipeHeight = 0;
+            return null;
+        } finally {
+            decodeOptions.inBitmap = null;
+        }
+    }
+
+    private static Bitmap decode(byte[] data, int length, String path) {
+        return data != null
+            ? BitmapFactory.decodeByteArray(data, 0, length, decodeOptions)
+            : BitmapFactory.decodeFile(path, decodeOptions);
+    }
+
+    /**
+     * 将截图或裁剪结果归还到 BitmapPool
+     */
+    public static void releaseBitmap(Bitmap bitmap) {
+        BitmapPool.getInstance().release(bitmap);
+    }
+
+    /**
+     * screencap 原始输出的头部长度
+     * Android 9 起在宽、高、格式之后追加了 4 字节色彩空间
+     */
+    private static int getRawHeaderSize() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? 16 : 12;
+    }
+
     /**
      * 裁剪图片的左上角区域
      * @param bitmap 原始图片
      * @param heightRatio 高度比例 (0.0 - 1.0)，例如 0.3 表示截取前 30% 高度
-     * @return 裁剪后的图片
+     * @return 裁剪后的图片（新的 Bitmap，不会是原图），失败返回 null
      */
     public static Bitmap cropTopLeft(Bitmap bitmap, float heightRatio) {
         if (bitmap == null || bitmap.isRecycled()) {
@@ -140,11 +538,15 @@ public class ScreenshotHelper {
             cropHeight = height / 3;
         }
         
+        long start = System.nanoTime();
         try {
-            return Bitmap.createBitmap(bitmap, 0, 0, width, cropHeight);
+            Bitmap crop = copyRegion(bitmap, 0, 0, width, cropHeight);
+            PipelineMetrics.record(PipelineMetrics.Stage.CROP, start);
+            return crop;
         } catch (Exception e) {
             Log.e(TAG, "裁剪图片失败", e);
-            return bitmap;
+            PipelineMetrics.recordError(PipelineMetrics.Stage.CROP);
+            return null;
         }
     }
 
@@ -176,14 +578,31 @@ public class ScreenshotHelper {
             return null;
         }
         
+        long start = System.nanoTime();
         try {
-            return Bitmap.createBitmap(bitmap, x, y, width, height);
+            Bitmap crop = copyRegion(bitmap, x, y, width, height);
+            PipelineMetrics.record(PipelineMetrics.Stage.CROP, start);
+            return crop;
         } catch (Exception e) {
             Log.e(TAG, "裁剪图片失败", e);
+            PipelineMetrics.recordError(PipelineMetrics.Stage.CROP);
             return null;
         }
     }
 
+    /**
+     * 将指定区域复制到池中的 Bitmap
+     */
+    private static synchronized Bitmap copyRegion(Bitmap bitmap, int x, int y, int width, int height) {
+        Bitmap crop = BitmapPool.getInstance().acquire(width, height);
+        cropSrc.set(x, y, x + width, y + height);
+        cropDst.set(0, 0, width, height);
+        cropCanvas.setBitmap(crop);
+        cropCanvas.drawBitmap(bitmap, cropSrc, cropDst, cropPaint);
+        cropCanvas.setBitmap(null);
+        return crop;
+    }
+
     /**
      * 删除截图文件
      */
@@ -0,0 +1,178 @@
+package com.kryp.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 共享内存帧环形缓冲区的布局
+ * 特权截图进程写入、应用进程读取，两端通过本类访问同一块共享内存。
+ * 头部之后是 slotCount 个槽位，第 n 帧写入 n % slotCount 号槽位；每个槽位带一个顺序锁序号，
+ * 写入前置为奇数、写完后置为偶数，读取前后序号一致且为偶数时说明读取期间槽位没有被覆盖。
+ * 像素按 RGBA_8888 逐行存放，与 Bitmap.copyPixelsToBuffer/copyPixelsFromBuffer 的格式一致。
+ * 本类不依赖 Android API。
+ */
+public class SharedFrameBuffer {
+    private static final int MAGIC = 0x4B465242; // "KFRB"
+
+    // 头部：魔数、槽位数、每个槽位的像素容量、最新帧序号
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_SLOT_COUNT = 4;
+    private static final int OFFSET_SLOT_CAPACITY = 8;
+    private static final int OFFSET_LATEST_FRAME = 16;
+
+    // 槽位头部：顺序锁序号、帧序号、宽、高、截图时间
+    private static final int SLOT_HEADER_SIZE = 32;
+    private static final int SLOT_SEQ = 0;
+    private static final int SLOT_FRAME = 8;
+    private static final int SLOT_WIDTH = 16;
+    private static final int SLOT_HEIGHT = 20;
+    private static final int SLOT_CAPTURE_NANOS = 24;
+
+    private final ByteBuffer buffer;
+    private final int slotCount;
+    private final int slotCapacity;
+
+    /**
+     * 在已映射的共享内存上打开缓冲区
+     * @throws IllegalArgumentException 内容不是有效的帧缓冲区
+     */
+    public SharedFrameBuffer(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.nativeOrder());
+        if (this.buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException("不是帧缓冲区");
+        }
+        this.slotCount = this.buffer.getInt(OFFSET_SLOT_COUNT);
+        this.slotCapacity = this.buffer.getInt(OFFSET_SLOT_CAPACITY);
+        if (slotCount <= 0 || slotCapacity <= 0
+                || totalSize(slotCount, slotCapacity) > this.buffer.capacity()) {
+            throw new IllegalArgumentException("帧缓冲区头部无效: " + slotCount + " x " + slotCapacity);
+        }
+    }
+
+    /**
+     * 所需共享内存大小
+     * @param slotCount 槽位数
+     * @param slotCapacity 每个槽位的像素容量（字节）
+     */
+    public static int totalSize(int slotCount, int slotCapacity) {
+        return HEADER_SIZE + slotCount * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+
+    /**
+     * 初始化共享内存中的头部，由写入方调用
+     */
+    public static SharedFrameBuffer format(ByteBuffer buffer, int slotCount, int slotCapacity) {
+        ByteBuffer b = buffer.duplicate().order(ByteOrder.nativeOrder());
+        for (int i = 0; i < HEADER_SIZE; i += 8) {
+            b.putLong(i, 0);
+        }
+        b.putInt(OFFSET_MAGIC, MAGIC);
+        b.putInt(OFFSET_SLOT_COUNT, slotCount);
+        b.putInt(OFFSET_SLOT_CAPACITY, slotCapacity);
+        b.putLong(OFFSET_LATEST_FRAME, -1);
+        for (int i = 0; i < slotCount; i++) {
+            int slot = HEADER_SIZE + i * (SLOT_HEADER_SIZE + slotCapacity);
+            b.putLong(slot + SLOT_SEQ, 0);
+            b.putLong(slot + SLOT_FRAME, -1);
+        }
+        return new SharedFrameBuffer(buffer);
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public int getSlotCapacity() {
+        return slotCapacity;
+    }
+
+    /**
+     * 最新写入完成的帧序号，尚无帧时为 -1
+     */
+    public long getLatestFrame() {
+        return buffer.getLong(OFFSET_LATEST_FRAME);
+    }
+
+    /**
+     * 开始写入一帧，返回该帧像素区域（位置为 0，界限为容量）
+     */
+    public ByteBuffer beginWrite(long frame) {
+        int slot = slotOffset(frame);
+        buffer.putLong(slot + SLOT_SEQ, buffer.getLong(slot + SLOT_SEQ) | 1);
+        return pixelRegion(slot, slotCapacity);
+    }
+
+    /**
+     * 写入完成，发布帧信息
+     */
+    public void endWrite(long frame, int width, int height, long captureNanos) {
+        int slot = slotOffset(frame);
+        buffer.putLong(slot + SLOT_FRAME, frame);
+        buffer.putInt(slot + SLOT_WIDTH, width);
+        buffer.putInt(slot + SLOT_HEIGHT, height);
+        buffer.putLong(slot + SLOT_CAPTURE_NANOS, captureNanos);
+        buffer.putLong(slot + SLOT_SEQ, buffer.getLong(slot + SLOT_SEQ) + 1);
+        buffer.putLong(OFFSET_LATEST_FRAME, frame);
+    }
+
+    /**
+     * 开始读取一帧
+     * @return 槽位的顺序锁序号；槽位正在写入或已被后续帧覆盖时返回 -1
+     */
+    public long beginRead(long frame) {
+        int slot = slotOffset(frame);
+        long seq = buffer.getLong(slot + SLOT_SEQ);
+        if ((seq & 1) != 0 || buffer.getLong(slot + SLOT_FRAME) != frame) {
+            return -1;
+        }
+        return seq;
+    }
+
+    /**
+     * 读取完成后检查期间槽位是否被改写
+     * @param seq beginRead 返回的序号
+     * @return 读取到的数据完整时返回 true
+     */
+    public boolean validate(long frame, long seq) {
+        return seq >= 0 && buffer.getLong(slotOffset(frame) + SLOT_SEQ) == seq;
+    }
+
+    public int getWidth(long frame) {
+        return buffer.getInt(slotOffset(frame) + SLOT_WIDTH);
+    }
+
+    public int getHeight(long frame) {
+        return buffer.getInt(slotOffset(frame) + SLOT_HEIGHT);
+    }
+
+    public long getCaptureNanos(long frame) {
+        return buffer.getLong(slotOffset(frame) + SLOT_CAPTURE_NANOS);
+    }
+
+    /**
+     * 帧中连续若干行的像素，不复制数据
+     * @param frame 帧序号
+     * @param firstRow 起始行
+     * @param rows 行数
+     */
+    public ByteBuffer rows(long frame, int firstRow, int rows) {
+        int slot = slotOffset(frame);
+        int stride = buffer.getInt(slot + SLOT_WIDTH) * 4;
+        ByteBuffer region = pixelRegion(slot, slotCapacity);
+        region.position(firstRow * stride);
+        region.limit((firstRow + rows) * stride);
+        return region.slice();
+    }
+
+    private ByteBuffer pixelRegion(int slot, int length) {
+        ByteBuffer region = buffer.duplicate();
+        region.position(slot + SLOT_HEADER_SIZE);
+        region.limit(slot + SLOT_HEADER_SIZE + length);
+        return region.slice();
+    }
+
+    private int slotOffset(long frame) {
+        return HEADER_SIZE + (int) (frame % slotCount) * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+}
@@ -0,0 +1,274 @@
+package com.kryp.test;
+
+import android.content.ComponentName;
+import android.content.ServiceConnection;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+import moe.shizuku.api.Shizuku;
+
+/**
+ * 共享内存截图客户端
+ * 启动并连接 CaptureService，每次截图只发起一次 Binder 调用取得帧序号，
+ * 再直接从映射的共享内存中把像素载入 Bitmap；区域截图只载入区域覆盖的行。
+ * 服务连接是异步的，未就绪或出错时各方法返回 null，由 ScreenshotHelper 退回其他截图方式。
+ */
+public class SharedFrameClient {
+    private static final String TAG = "SharedFrameClient";
+    // 环形缓冲区槽位数：应用读取一帧时服务可以继续写入后面的槽位
+    private static final int SLOT_COUNT = 3;
+    // UserService 需要的最低 Shizuku 版本
+    private static final int MIN_SHIZUKU_VERSION = 10;
+
+    private static SharedFrameClient instance;
+
+    private final Shizuku.UserServiceArgs serviceArgs = new Shizuku.UserServiceArgs(
+            new ComponentName(BuildConfig.APPLICATION_ID, CaptureService.class.getName()))
+        .daemon(false)
+        .processNameSuffix("capture")
+        .debuggable(BuildConfig.DEBUG)
+        .version(BuildConfig.VERSION_CODE);
+
+    private ICaptureService service;
+    private SharedMemory memory;
+    private ByteBuffer mapped;
+    private SharedFrameBuffer frames;
+    private boolean binding;
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            synchronized (SharedFrameClient.this) {
+                binding = false;
+                if (binder == null || !binder.pingBinder()) {
+                    Log.e(TAG, "截图服务连接无效");
+                    return;
+                }
+                service = ICaptureService.Stub.asInterface(binder);
+                if (openBuffer()) {
+                    Log.d(TAG, "截图服务已连接");
+                }
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            synchronized (SharedFrameClient.this) {
+                Log.d(TAG, "截图服务已断开");
+                binding = false;
+                service = null;
+                closeBuffer();
+            }
+        }
+    };
+
+    /**
+     * 获取全局实例
+     */
+    public static synchronized SharedFrameClient getInstance() {
+        if (instance == null) {
+            instance = new SharedFrameClient();
+        }
+        return instance;
+    }
+
+    /**
+     * 当前系统是否支持共享内存截图
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1;
+    }
+
+    /**
+     * 启动并连接截图服务，已连接或正在连接时直接返回
+     * @return 已发起连接或已连接返回 true
+     */
+    public synchronized boolean bind() {
+        if (service != null || binding) {
+            return true;
+        }
+        if (!isSupported()) {
+            Log.e(TAG, "共享内存截图需要 Android 8.1 及以上");
+            return false;
+        }
+        try {
+            if (Shizuku.getVersion() < MIN_SHIZUKU_VERSION) {
+                Log.e(TAG, "Shizuku 版本过低，不支持 UserService");
+                return false;
+            }
+            Shizuku.bindUserService(serviceArgs, connection);
+            binding = true;
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "启动截图服务失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 断开并结束截图服务
+     */
+    public synchronized void unbind() {
+        if (service == null && !binding) {
+            return;
+        }
+        try {
+            Shizuku.unbindUserService(serviceArgs, connection, true);
+        } catch (Exception e) {
+            Log.e(TAG, "结束截图服务失败", e);
+        }
+        binding = false;
+        service = null;
+        closeBuffer();
+    }
+
+    /**
+     * 服务已连接且缓冲区可用
+     */
+    public synchronized boolean isReady() {
+        return service != null && frames != null;
+    }
+
+    /**
+     * 截取整屏
+     * @param reuse 可复用的 Bitmap，尺寸匹配时直接写入，可为 null
+     * @return 截图 Bitmap，未就绪或失败返回 null
+     */
+    public synchronized Bitmap acquireFrame(Bitmap reuse) {
+        long frame = captureFrame();
+        if (frame < 0) {
+            return null;
+        }
+        long seq = frames.beginRead(frame);
+        int width = frames.getWidth(frame);
+        int height = frames.getHeight(frame);
+        Bitmap bitmap;
+        if (reuse != null && !reuse.isRecycled() && reuse.isMutable()
+                && reuse.getWidth() == width && reuse.getHeight() == height
+                && reuse.getConfig() == Bitmap.Config.ARGB_8888) {
+            bitmap = reuse;
+        } else {
+            bitmap = BitmapPool.getInstance().acquire(width, height);
+        }
+        bitmap.copyPixelsFromBuffer(frames.rows(frame, 0, height));
+        if (!frames.validate(frame, seq)) {
+            Log.e(TAG, "帧 " + frame + " 在读取期间被覆盖");
+            if (bitmap != reuse) {
+                BitmapPool.getInstance().release(bitmap);
+            }
+            return null;
+        }
+        return bitmap;
+    }
+
+    /**
+     * 截取指定区域，只载入区域覆盖的行
+     * @param region 目标区域
+     * @param outBounds 长度为 4 的数组，写入 {整帧宽度, 整帧高度, 区域左边界, 区域上边界}，可为 null
+     * @return 区域 Bitmap，未就绪或失败返回 null
+     */
+    public synchronized Bitmap acquireRegion(FrameRegion region, int[] outBounds) {
+        long frame = captureFrame();
+        if (frame < 0) {
+            return null;
+        }
+        long seq = frames.beginRead(frame);
+        int width = frames.getWidth(frame);
+        int height = frames.getHeight(frame);
+        int[] bounds = region.resolve(width, height);
+        if (bounds == null) {
+            Log.e(TAG, "截图区域为空: " + region);
+            return null;
+        }
+        // 整行是连续内存，可以一次载入；左右不满整行时再裁剪
+        int rows = bounds[3] - bounds[1];
+        Bitmap band = BitmapPool.getInstance().acquire(width, rows);
+        band.copyPixelsFromBuffer(frames.rows(frame, bounds[1], rows));
+        if (!frames.validate(frame, seq)) {
+            Log.e(TAG, "帧 " + frame + " 在读取期间被覆盖");
+            BitmapPool.getInstance().release(band);
+            return null;
+        }
+        if (outBounds != null) {
+            outBounds[0] = width;
+            outBounds[1] = height;
+            outBounds[2] = bounds[0];
+            outBounds[3] = bounds[1];
+        }
+        if (bounds[0] == 0 && bounds[2] == width) {
+            return band;
+        }
+        Bitmap crop = ScreenshotHelper.cropBitmap(band, bounds[0], 0, bounds[2] - bounds[0], rows);
+        BitmapPool.getInstance().release(band);
+        return crop;
+    }
+
+    /**
+     * 请求服务截取一帧
+     * @return 帧序号，失败返回 -1
+     */
+    private long captureFrame() {
+        if (service == null || frames == null) {
+            return -1;
+        }
+        try {
+            long frame = service.capture();
+            if (frame == -2) {
+                // 屏幕尺寸变大（如切换分辨率），按新尺寸重建缓冲区后重试一次
+                Log.d(TAG, "帧缓冲区容量不足，重新创建");
+                if (!openBuffer()) {
+                    return -1;
+                }
+                frame = service.capture();
+            }
+            if (frame < 0) {
+                return -1;
+            }
+            if (frames.beginRead(frame) < 0) {
+                Log.e(TAG, "帧 " + frame + " 不可读");
+                return -1;
+            }
+            return frame;
+        } catch (RemoteException e) {
+            Log.e(TAG, "截图服务调用失败", e);
+            return -1;
+        }
+    }
+
+    private boolean openBuffer() {
+        closeBuffer();
+        try {
+            memory = service.openBuffer(SLOT_COUNT);
+            if (memory == null) {
+                Log.e(TAG, "截图服务创建缓冲区失败");
+                return false;
+            }
+            mapped = memory.mapReadOnly();
+            frames = new SharedFrameBuffer(mapped);
+            return true;
+        } catch (RemoteException | ErrnoException | IllegalArgumentException e) {
+            Log.e(TAG, "映射帧缓冲区失败", e);
+            closeBuffer();
+            return false;
+        }
+    }
+
+    private void closeBuffer() {
+        frames = null;
+        if (mapped != null) {
+            SharedMemory.unmap(mapped);
+            mapped = null;
+        }
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.kryp.test;
+
+/**
+ * Shell 命令输出解析
+ * 从 ShizukuHelper 中拆出的纯文本解析逻辑，便于在 JVM 上单独做基准测试。
+ * 本类不依赖 Android API。
+ */
+public final class ShellOutputParser {
+    private static final String PHYSICAL_SIZE = "Physical size:";
+    private static final String OVERRIDE_SIZE = "Override size:";
+
+    private ShellOutputParser() {
+    }
+
+    /**
+     * 解析 wm size 的输出
+     * 格式为 "Physical size: 1080x2400"，设置过分辨率时还会有一行 "Override size: 720x1600"，
+     * 此时截图和点击坐标都以覆盖后的分辨率为准，优先返回覆盖值。
+     * @param output 命令输出
+     * @return {宽, 高}，无法解析时返回 null
+     */
+    public static int[] parseWmSize(String output) {
+        if (output == null) {
+            return null;
+        }
+        int[] override = parseSizeAfter(output, OVERRIDE_SIZE);
+        if (override != null) {
+            return override;
+        }
+        return parseSizeAfter(output, PHYSICAL_SIZE);
+    }
+
+    /**
+     * 解析前缀之后的 "宽x高"，只做一次线性扫描，不创建中间字符串
+     */
+    private static int[] parseSizeAfter(String output, String prefix) {
+        int index = output.indexOf(prefix);
+        if (index < 0) {
+            return null;
+        }
+        int i = index + prefix.length();
+        int length = output.length();
+        while (i < length && output.charAt(i) == ' ') {
+            i++;
+        }
+
+        int width = 0;
+        int digits = 0;
+        while (i < length && Character.isDigit(output.charAt(i)) && digits < 6) {
+            width = width * 10 + (output.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || i >= length || output.charAt(i) != 'x') {
+            return null;
+        }
+        i++;
+
+        int height = 0;
+        digits = 0;
+        while (i < length && Character.isDigit(output.charAt(i)) && digits < 6) {
+            height = height * 10 + (output.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || width == 0 || height == 0) {
+            return null;
+        }
+        return new int[]{width, height};
+    }
+}
@@ -0,0 +1,299 @@
+package com.kryp.test;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 常驻特权 Shell 会话
+ * 通过 Shizuku 启动一个长期存活的 sh 进程，所有命令都写入同一个进程执行，避免每条命令都创建新进程。
+ * 每条命令后追加带序号的结束标记（包含退出码），读取到标记即视为该命令结束。
+ * 命令超时、进程退出或 Binder 断开时会话被销毁，下一次执行时自动重建。
+ * 执行命令的线程之间互斥；close() 不加锁，可在主线程随时调用，正在等待输出的命令会立即以失败返回。
+ */
+public class ShellSession {
+    private static final String TAG = "ShellSession";
+
+    public static final long DEFAULT_TIMEOUT_MS = 10000;
+
+    // 读取线程遇到 EOF 时放入队列的哨兵对象（按引用比较）
+    private static final String EOF = new String("<eof>");
+
+    private static ShellSession instance;
+
+    /**
+     * 命令执行结果
+     */
+    public static class Result {
+        public final int exitCode;
+        public final String output;
+        public final boolean timedOut;
+
+        Result(int exitCode, String output, boolean timedOut) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * 命令是否已在会话中执行完成（不论退出码）
+         */
+        public boolean isCompleted() {
+            return output != null;
+        }
+
+        /**
+         * 命令是否执行成功（退出码为 0）
+         */
+        public boolean isSuccess() {
+            return output != null && exitCode == 0;
+        }
+
+        static Result failed(boolean timedOut) {
+            return new Result(-1, null, timedOut);
+        }
+    }
+
+    /**
+     * 一次启动的 sh 进程及其输出队列
+     * 每次启动进程时新建；旧进程的读取线程只会写入它自己的队列
+     */
+    private static class Connection {
+        final Process process;
+        final OutputStream stdin;
+        final LinkedBlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread readerThread;
+
+        Connection(Process process) {
+            this.process = process;
+            this.stdin = process.getOutputStream();
+        }
+
+        /**
+         * 销毁进程，并放入 EOF 使正在等待输出的线程立即返回
+         */
+        void destroy() {
+            try {
+                stdin.close();
+            } catch (IOException ignored) {
+            }
+            process.destroy();
+            if (readerThread != null) {
+                readerThread.interrupt();
+            }
+            lines.offer(EOF);
+        }
+    }
+
+    private final String marker = "__SESSION_END_" + UUID.randomUUID().toString().replace("-", "") + "__";
+    private final AtomicReference<Connection> connection = new AtomicReference<>();
+    private long nextSeq;
+
+    private ShellSession() {
+    }
+
+    /**
+     * 获取全局会话实例
+     */
+    public static synchronized ShellSession getInstance() {
+        if (instance == null) {
+            instance = new ShellSession();
+        }
+        return instance;
+    }
+
+    /**
+     * 执行单条命令
+     * @param command 命令
+     * @param timeoutMs 超时时间（毫秒）
+     * @return 执行结果，不会返回 null
+     */
+    public Result exec(String command, long timeoutMs) {
+        return execBatch(Collections.singletonList(command), timeoutMs).get(0);
+    }
+
+    /**
+     * 批量执行多条命令，一次写入会话，按顺序收集各自的结果
+     * @param commands 命令列表
+     * @param timeoutMs 每条命令的超时时间（毫秒）
+     * @return 与命令一一对应的执行结果
+     */
+    public synchronized List<Result> execBatch(List<String> commands, long timeoutMs) {
+        List<Result> results = new ArrayList<>(commands.size());
+        if (commands.isEmpty()) {
+            return results;
+        }
+
+        long firstSeq = nextSeq;
+        Connection conn = submit(commands, firstSeq);
+        if (conn == null) {
+            // 会话可能已失效（进程退出、Binder 断开），重建后再试一次
+            conn = submit(commands, firstSeq);
+            if (conn == null) {
+                for (int i = 0; i < commands.size(); i++) {
+                    results.add(Result.failed(false));
+                }
+                return results;
+            }
+        }
+        nextSeq += commands.size();
+
+        for (int i = 0; i < commands.size(); i++) {
+            Result result = readResult(conn, firstSeq + i, timeoutMs);
+            results.add(result);
+            if (!result.isCompleted()) {
+                Log.e(TAG, "命令执行失败" + (result.timedOut ? "（超时）" : "") + ": " + commands.get(i));
+                // 会话状态未知，销毁后由下一次调用重建
+                close(conn);
+                for (int j = i + 1; j < commands.size(); j++) {
+                    results.add(Result.failed(false));
+                }
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 销毁会话进程，不加锁，不会等待正在执行的命令
+     */
+    public void close() {
+        Connection conn = connection.getAndSet(null);
+        if (conn != null) {
+            conn.destroy();
+        }
+    }
+
+    /**
+     * 只在会话仍是 conn 时销毁，避免关掉其他线程已经重建的会话
+     */
+    private void close(Connection conn) {
+        if (connection.compareAndSet(conn, null)) {
+            conn.destroy();
+        }
+    }
+
+    /**
+     * 确保会话进程存活
+     */
+    private Connection ensureStarted() throws IOException {
+        Connection current = connection.get();
+        if (current != null) {
+            return current;
+        }
+        Process p = ShizukuHelper.newProcess(new String[]{"sh"});
+        if (p == null) {
+            throw new IOException("无法启动 Shell 会话");
+        }
+        Connection conn = new Connection(p);
+        LinkedBlockingQueue<String> queue = conn.lines;
+
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+        conn.readerThread = new Thread(() -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    queue.offer(line);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "读取 Shell 输出中断", e);
+            } finally {
+                queue.offer(EOF);
+            }
+        }, "shell-session-reader");
+        conn.readerThread.setDaemon(true);
+        conn.readerThread.start();
+        connection.set(conn);
+
+        // 合并标准错误，使错误信息也出现在命令输出中
+        conn.stdin.write("exec 2>&1\n".getBytes(StandardCharsets.UTF_8));
+        conn.stdin.flush();
+        Log.d(TAG, "Shell 会话已启动");
+        return conn;
+    }
+
+    /**
+     * 将一批命令连同结束标记写入会话
+     * @return 写入的会话，失败时销毁该会话并返回 null
+     */
+    private Connection submit(List<String> commands, long firstSeq) {
+        Connection conn = null;
+        try {
+            conn = ensureStarted();
+            StringBuilder script = new StringBuilder();
+            for (int i = 0; i < commands.size(); i++) {
+                // 命令不读取会话的标准输入，避免吞掉后续命令
+                script.append("{ ").append(commands.get(i)).append("\n} </dev/null\n");
+                script.append("echo \"").append(marker).append(' ')
+                    .append(firstSeq + i).append(" $?\"\n");
+            }
+            conn.stdin.write(script.toString().getBytes(StandardCharsets.UTF_8));
+            conn.stdin.flush();
+            return conn;
+        } catch (IOException e) {
+            Log.e(TAG, "写入 Shell 会话失败", e);
+            if (conn != null) {
+                close(conn);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 读取指定序号命令的输出，直到遇到对应的结束标记
+     */
+    private Result readResult(Connection conn, long seq, long timeoutMs) {
+        LinkedBlockingQueue<String> lines = conn.lines;
+        StringBuilder output = new StringBuilder();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                String line = remaining > 0 ? lines.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (line == null) {
+                    return Result.failed(true);
+                }
+                if (line == EOF) {
+                    return Result.failed(false);
+                }
+
+                int index = line.indexOf(marker);
+                if (index < 0) {
+                    output.append(line).append('\n');
+                    continue;
+                }
+
+                // 命令输出没有以换行结尾时，标记前面的内容属于输出
+                output.append(line, 0, index);
+                String[] parts = line.substring(index + marker.length()).trim().split(" ");
+                if (parts.length != 2 || Long.parseLong(parts[0]) != seq) {
+                    Log.w(TAG, "忽略不匹配的结束标记: " + line);
+                    continue;
+                }
+                int length = output.length();
+                if (length > 0 && output.charAt(length - 1) == '\n') {
+                    output.setLength(length - 1);
+                }
+                return new Result(Integer.parseInt(parts[1]), output.toString(), false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.failed(false);
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "解析结束标记失败", e);
+            return Result.failed(false);
+        }
+    }
+}
@@ -2,15 +2,16 @@ package com.kryp.test;
 
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.os.RemoteException;
 import android.util.Log;
 
+import java.util.List;
+
 import moe.shizuku.api.Shizuku;
-import moe.shizuku.api.ShizukuBinderWrapper;
 
 /**
  * Shizuku 辅助类
  * 用于执行系统级操作（点击、截图等）
+ * Shell 命令统一通过常驻的 ShellSession 执行，不再为每条命令创建新进程
  */
 public class ShizukuHelper {
     private static final String TAG = "ShizukuHelper";
@@ -27,9 +28,14 @@ public class ShizukuHelper {
     public ShizukuHelper(Context context) {
         this.context = context;
         Shizuku.addBinderReceivedListenerSticky(() -> {
+            // 之前因 Binder 未就绪而失败的输入注入可以重新尝试
+            InputInjector.reset();
             checkPermission();
         });
         Shizuku.addBinderDeadListener(() -> {
+            // Binder 断开后会话进程随之失效，下一次执行命令时重建
+            ShellSession.getInstance().close();
+            InputInjector.reset();
             if (authChangeListener != null) {
                 authChangeListener.onAuthDenied();
             }
@@ -71,48 +77,83 @@ public class ShizukuHelper {
     }
 
     /**
-     * 执行 Shell 命令并返回输出
+     * 通过 Shizuku 创建特权进程
+     * @param command 命令及参数
+     * @return 进程，失败返回 null
      */
-    public static String exec(String command) {
+    public static Process newProcess(String[] command) {
         try {
-            ShizukuBinderWrapper binderWrapper = new ShizukuBinderWrapper(Shizuku.getBinder());
-            return binderWrapper.exec(command);
-        } catch (RemoteException e) {
-            Log.e(TAG, "执行命令失败: " + command, e);
+            return Shizuku.newProcess(command, null, null);
+        } catch (Exception e) {
+            Log.e(TAG, "创建进程失败", e);
             return null;
         }
     }
 
+    /**
+     * 执行 Shell 命令并返回输出
+     * @return 命令输出，执行失败或超时返回 null
+     */
+    public static String exec(String command) {
+        ShellSession.Result result = execForResult(command);
+        return result.isCompleted() ? result.output : null;
+    }
+
+    /**
+     * 执行 Shell 命令并返回包含退出码的结果
+     */
+    public static ShellSession.Result execForResult(String command) {
+        return ShellSession.getInstance().exec(command, ShellSession.DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * 在一次往返中批量执行多条 Shell 命令
+     */
+    public static List<ShellSession.Result> execBatch(List<String> commands) {
+        return ShellSession.getInstance().execBatch(commands, ShellSession.DEFAULT_TIMEOUT_MS);
+    }
+
     /**
      * 模拟点击
+     * 交给 TapDispatcher，按校准结果优先使用输入注入，不可用时依次退回无障碍手势和 input tap 命令
      */
     public static boolean tap(int x, int y) {
+        return TapDispatcher.getInstance().tap(x, y);
+    }
+
+    /**
+     * 通过 input tap 命令模拟点击
+     */
+    public static boolean tapByShell(int x, int y) {
         String cmd = String.format("input tap %d %d", x, y);
-        String result = exec(cmd);
-        return result != null;
+        return execForResult(cmd).isSuccess();
+    }
+
+    /**
+     * 模拟滑动
+     * @param durationMs 滑动时长（毫秒）
+     */
+    public static boolean swipe(int x1, int y1, int x2, int y2, long durationMs) {
+        String cmd = String.format("input swipe %d %d %d %d %d", x1, y1, x2, y2, durationMs);
+        return execForResult(cmd).isSuccess();
     }
 
     /**
      * 获取屏幕尺寸
+     * 优先使用 DisplayGeometry 缓存的屏幕信息，未初始化时才在 Shell 会话中执行 wm size
      */
     public static int[] getScreenSize() {
+        DisplayGeometry.Snapshot display = DisplayGeometry.getInstance().get();
+        if (display != null) {
+            return new int[]{display.width, display.height};
+        }
         String result = exec("wm size");
+        int[] size = ShellOutputParser.parseWmSize(result);
+        if (size != null) {
+            return size;
+        }
         if (result != null) {
-            // 格式: Physical size: 1080x2400
-            String[] parts = result.split(" ");
-            if (parts.length >= 3) {
-                String size = parts[2];
-                String[] dimensions = size.split("x");
-                if (dimensions.length == 2) {
-                    try {
-                        int width = Integer.parseInt(dimensions[0]);
-                        int height = Integer.parseInt(dimensions[1]);
-                        return new int[]{width, height};
-                    } catch (NumberFormatException e) {
-                        Log.e(TAG, "解析屏幕尺寸失败", e);
-                    }
-                }
-            }
+            Log.e(TAG, "解析屏幕尺寸失败: " + result);
         }
         // 默认返回 1080x2400
         return new int[]{1080, 2400};
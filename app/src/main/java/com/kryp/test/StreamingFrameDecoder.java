@@ -0,0 +1,310 @@
+package com.kryp.test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 按行流式解码截图
+ * 支持 screencap 输出的 PNG（8 位 RGB/RGBA、非隔行）和原始帧缓冲格式。
+ * 只转换目标区域覆盖的行列，目标区域最后一行解码完成后立即停止读取，剩余数据不再处理。
+ * 本类不依赖 Android API，解码结果为 ARGB 像素数组。
+ * 实例内部复用缓冲区和解码结果对象，下一次解码会覆盖上一次的结果，不是线程安全的。
+ */
+public class StreamingFrameDecoder {
+    private static final byte[] PNG_SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+    private static final int CHUNK_IHDR = 0x49484452;
+    private static final int CHUNK_IDAT = 0x49444154;
+    private static final int CHUNK_IEND = 0x49454E44;
+
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    public static final int RAW_FORMAT_RGBA_8888 = 1;
+    public static final int RAW_FORMAT_RGBX_8888 = 2;
+
+    /**
+     * 解码结果
+     */
+    public static class DecodedRegion {
+        public int frameWidth;
+        public int frameHeight;
+        public int left;
+        public int top;
+        public int width;
+        public int height;
+        // ARGB 像素，按行存放，长度至少为 width * height
+        public int[] pixels;
+    }
+
+    private final Inflater inflater = new Inflater();
+    private final byte[] header = new byte[16];
+    private byte[] chunkBuffer = new byte[64 * 1024];
+    private byte[] currentRow = new byte[0];
+    private byte[] previousRow = new byte[0];
+    private int[] pixels = new int[0];
+    // 解码结果对象在每次调用之间复用
+    private final DecodedRegion decoded = new DecodedRegion();
+
+    /**
+     * 从 PNG 流中解码指定区域
+     * @param in PNG 数据流，读取到区域末行后不再继续读取
+     * @param region 目标区域
+     * @return 解码结果，区域为空时返回 null
+     */
+    public DecodedRegion decodePng(InputStream in, FrameRegion region) throws IOException {
+        readFully(in, header, 0, PNG_SIGNATURE.length);
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (header[i] != PNG_SIGNATURE[i]) {
+                throw new IOException("不是 PNG 数据");
+            }
+        }
+
+        int width = 0;
+        int height = 0;
+        int bytesPerPixel = 0;
+        int[] bounds = null;
+        DecodedRegion result = null;
+        int row = 0;
+        int rowOffset = 0;
+        int stride = 0;
+        inflater.reset();
+
+        while (true) {
+            readFully(in, header, 0, 8);
+            int length = readInt(header, 0);
+            int type = readInt(header, 4);
+
+            if (type == CHUNK_IHDR) {
+                readFully(in, header, 0, 13);
+                width = readInt(header, 0);
+                height = readInt(header, 4);
+                int bitDepth = header[8] & 0xFF;
+                int colorType = header[9] & 0xFF;
+                int interlace = header[12] & 0xFF;
+                if (bitDepth != 8 || interlace != 0
+                        || (colorType != COLOR_TYPE_RGB && colorType != COLOR_TYPE_RGBA)) {
+                    throw new IOException("不支持的 PNG 格式: depth=" + bitDepth
+                        + ", color=" + colorType + ", interlace=" + interlace);
+                }
+                bytesPerPixel = colorType == COLOR_TYPE_RGBA ? 4 : 3;
+                stride = width * bytesPerPixel;
+                bounds = region.resolve(width, height);
+                if (bounds == null) {
+                    return null;
+                }
+                result = newResult(width, height, bounds);
+                ensureRowCapacity(stride + 1);
+                skipFully(in, 4 + length - 13);
+            } else if (type == CHUNK_IDAT) {
+                if (result == null) {
+                    throw new IOException("IDAT 出现在 IHDR 之前");
+                }
+                int remaining = length;
+                while (remaining > 0) {
+                    int n = in.read(chunkBuffer, 0, Math.min(remaining, chunkBuffer.length));
+                    if (n < 0) {
+                        throw new EOFException();
+                    }
+                    remaining -= n;
+                    inflater.setInput(chunkBuffer, 0, n);
+                    try {
+                        while (true) {
+                            int inflated = inflater.inflate(currentRow, rowOffset, stride + 1 - rowOffset);
+                            if (inflated == 0) {
+                                if (inflater.needsDictionary()) {
+                                    throw new IOException("PNG 数据需要预设字典");
+                                }
+                                break;
+                            }
+                            rowOffset += inflated;
+                            if (rowOffset < stride + 1) {
+                                continue;
+                            }
+                            unfilterRow(stride, bytesPerPixel);
+                            if (row >= bounds[1]) {
+                                convertPngRow(result, row - bounds[1], bytesPerPixel);
+                            }
+                            row++;
+                            rowOffset = 0;
+                            if (row >= bounds[3]) {
+                                // 目标区域已解码完成，放弃剩余数据
+                                return result;
+                            }
+                            byte[] swap = previousRow;
+                            previousRow = currentRow;
+                            currentRow = swap;
+                        }
+                    } catch (DataFormatException e) {
+                        throw new IOException("PNG 数据解压失败", e);
+                    }
+                }
+                skipFully(in, 4);
+            } else if (type == CHUNK_IEND) {
+                throw new EOFException("PNG 数据在区域解码完成前结束");
+            } else {
+                skipFully(in, (long) length + 4);
+            }
+        }
+    }
+
+    /**
+     * 从 screencap 原始输出流中解码指定区域
+     * @param in 原始数据流
+     * @param headerSize 头部长度（12 或 16 字节，取决于系统版本）
+     * @param region 目标区域
+     * @return 解码结果，区域为空时返回 null
+     */
+    public DecodedRegion decodeRaw(InputStream in, int headerSize, FrameRegion region) throws IOException {
+        readFully(in, header, 0, headerSize);
+        int width = readIntLittleEndian(header, 0);
+        int height = readIntLittleEndian(header, 4);
+        int format = readIntLittleEndian(header, 8);
+        if (format != RAW_FORMAT_RGBA_8888 && format != RAW_FORMAT_RGBX_8888) {
+            throw new IOException("不支持的原始像素格式: " + format);
+        }
+        int[] bounds = region.resolve(width, height);
+        if (bounds == null) {
+            return null;
+        }
+
+        DecodedRegion result = newResult(width, height, bounds);
+        int stride = width * 4;
+        ensureRowCapacity(stride);
+        skipFully(in, (long) bounds[1] * stride);
+
+        boolean opaque = format == RAW_FORMAT_RGBX_8888;
+        int[] out = result.pixels;
+        for (int y = 0; y < result.height; y++) {
+            readFully(in, currentRow, 0, stride);
+            int o = y * result.width;
+            int p = bounds[0] * 4;
+            for (int x = 0; x < result.width; x++, p += 4) {
+                int a = opaque ? 0xFF : currentRow[p + 3] & 0xFF;
+                out[o + x] = (a << 24)
+                    | ((currentRow[p] & 0xFF) << 16)
+                    | ((currentRow[p + 1] & 0xFF) << 8)
+                    | (currentRow[p + 2] & 0xFF);
+            }
+        }
+        return result;
+    }
+
+    private DecodedRegion newResult(int width, int height, int[] bounds) {
+        decoded.frameWidth = width;
+        decoded.frameHeight = height;
+        decoded.left = bounds[0];
+        decoded.top = bounds[1];
+        decoded.width = bounds[2] - bounds[0];
+        decoded.height = bounds[3] - bounds[1];
+        int size = decoded.width * decoded.height;
+        if (pixels.length < size) {
+            pixels = new int[size];
+        }
+        decoded.pixels = pixels;
+        return decoded;
+    }
+
+    private void ensureRowCapacity(int size) {
+        if (currentRow.length < size) {
+            currentRow = new byte[size];
+            previousRow = new byte[size];
+        }
+        // 第一行的 Up/Average/Paeth 滤波以全 0 的上一行为参照
+        Arrays.fill(previousRow, 0, size, (byte) 0);
+    }
+
+    /**
+     * 还原 PNG 行滤波，currentRow[0] 为滤波类型
+     */
+    private void unfilterRow(int stride, int bpp) throws IOException {
+        byte[] cur = currentRow;
+        byte[] prev = previousRow;
+        int filter = cur[0];
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = 1 + bpp; i <= stride; i++) {
+                    cur[i] += cur[i - bpp];
+                }
+                break;
+            case 2:
+                for (int i = 1; i <= stride; i++) {
+                    cur[i] += prev[i];
+                }
+                break;
+            case 3:
+                for (int i = 1; i <= stride; i++) {
+                    int left = i > bpp ? cur[i - bpp] & 0xFF : 0;
+                    cur[i] += (byte) ((left + (prev[i] & 0xFF)) >>> 1);
+                }
+                break;
+            case 4:
+                for (int i = 1; i <= stride; i++) {
+                    int a = i > bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i > bpp ? prev[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    int predictor = (pa <= pb && pa <= pc) ? a : (pb <= pc ? b : c);
+                    cur[i] += (byte) predictor;
+                }
+                break;
+            default:
+                throw new IOException("未知的 PNG 滤波类型: " + filter);
+        }
+    }
+
+    private void convertPngRow(DecodedRegion result, int y, int bpp) {
+        byte[] cur = currentRow;
+        int[] out = result.pixels;
+        int o = y * result.width;
+        int p = 1 + result.left * bpp;
+        for (int x = 0; x < result.width; x++, p += bpp) {
+            int a = bpp == 4 ? cur[p + 3] & 0xFF : 0xFF;
+            out[o + x] = (a << 24)
+                | ((cur[p] & 0xFF) << 16)
+                | ((cur[p + 1] & 0xFF) << 8)
+                | (cur[p + 2] & 0xFF);
+        }
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+            | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    private static int readIntLittleEndian(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8)
+            | ((b[off + 2] & 0xFF) << 16) | ((b[off + 3] & 0xFF) << 24);
+    }
+
+    private static void readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            int n = in.read(chunkBuffer, 0, (int) Math.min(count, chunkBuffer.length));
+            if (n < 0) {
+                throw new EOFException();
+            }
+            count -= n;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.kryp.test;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 点击方式校准
+ * 在一个无害的位置（悬浮窗标题）依次用每种可用方式点击若干次，
+ * 测量从发起点击到点击送达的往返延迟，计算中位数和抖动，结果交给 TapDispatcher 排序并保存。
+ * 校准会阻塞调用线程，不能在主线程调用。
+ */
+public class TapCalibrator {
+    private static final String TAG = "TapCalibrator";
+
+    // 每种方式的测量次数
+    private static final int SAMPLES = 10;
+    // 预热次数（首次点击包含服务获取、会话启动等一次性开销），不计入结果
+    private static final int WARMUP = 2;
+    // 相邻两次点击的间隔，避免被识别为双击
+    private static final long SAMPLE_GAP_MS = 150;
+
+    /**
+     * 校准所有可用的点击方式，并应用、保存结果
+     * @param context Context
+     * @param safeX 安全点击位置 x 坐标
+     * @param safeY 安全点击位置 y 坐标
+     * @return 各方式的校准结果
+     */
+    public static List<TapDispatcher.Calibration> calibrate(Context context, int safeX, int safeY)
+            throws InterruptedException {
+        List<TapDispatcher.Calibration> results = new ArrayList<>();
+        for (TapDispatcher.Backend backend : TapDispatcher.Backend.values()) {
+            if (!TapDispatcher.isAvailable(backend)) {
+                Log.d(TAG, backend + " 不可用，跳过");
+                continue;
+            }
+            TapDispatcher.Calibration calibration = measure(backend, safeX, safeY);
+            Log.d(TAG, "校准结果: " + calibration);
+            results.add(calibration);
+        }
+        TapDispatcher dispatcher = TapDispatcher.getInstance();
+        dispatcher.apply(results);
+        dispatcher.save(context, results);
+        return results;
+    }
+
+    private static TapDispatcher.Calibration measure(TapDispatcher.Backend backend, int x, int y)
+            throws InterruptedException {
+        for (int i = 0; i < WARMUP; i++) {
+            TapDispatcher.tapWith(backend, x, y);
+            Thread.sleep(SAMPLE_GAP_MS);
+        }
+
+        double[] latencies = new double[SAMPLES];
+        int count = 0;
+        int failures = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            boolean success = TapDispatcher.tapWith(backend, x, y);
+            long elapsed = System.nanoTime() - start;
+            if (success) {
+                latencies[count++] = elapsed / 1e6;
+            } else {
+                failures++;
+            }
+            Thread.sleep(SAMPLE_GAP_MS);
+        }
+        if (count == 0) {
+            return new TapDispatcher.Calibration(backend, 0, 0, 0, failures);
+        }
+
+        double[] values = Arrays.copyOf(latencies, count);
+        Arrays.sort(values);
+        double median = count % 2 == 1 ? values[count / 2] : (values[count / 2 - 1] + values[count / 2]) / 2;
+        double mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= count;
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+        double jitter = Math.sqrt(variance / count);
+        return new TapDispatcher.Calibration(backend, median, jitter, count, failures);
+    }
+}
@@ -0,0 +1,346 @@
+package com.kryp.test;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 点击分发器
+ * 管理所有点击方式，按校准得到的延迟从快到慢排序，每次点击使用排在最前面的健康方式；
+ * 某种方式连续失败达到上限后暂时停用一段时间，本次点击立即切换到下一种方式。
+ * 校准结果保存在 ClickerPrefs 中，启动时通过 load() 恢复。
+ */
+public class TapDispatcher {
+    private static final String TAG = "TapDispatcher";
+    private static final String PREF_NAME = "ClickerPrefs";
+    private static final String KEY_TAP_CALIBRATION = "tap_calibration";
+
+    // 连续失败多少次后暂时停用
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    // 停用时长
+    private static final long FAILURE_COOLDOWN_MS = 30000;
+    // 等待无障碍手势完成的最长时间
+    private static final long ACCESSIBILITY_TIMEOUT_MS = 1000;
+
+    /**
+     * 点击方式
+     */
+    public enum Backend {
+        INJECT,        // 通过输入服务直接注入事件
+        ACCESSIBILITY, // 无障碍服务手势
+        SHELL          // input tap 命令
+    }
+
+    /**
+     * 一种点击方式的校准结果
+     */
+    public static class Calibration {
+        public final Backend backend;
+        // 往返延迟中位数和标准差（毫秒）
+        public final double medianMs;
+        public final double jitterMs;
+        public final int samples;
+        public final int failures;
+
+        public Calibration(Backend backend, double medianMs, double jitterMs, int samples, int failures) {
+            this.backend = backend;
+            this.medianMs = medianMs;
+            this.jitterMs = jitterMs;
+            this.samples = samples;
+            this.failures = failures;
+        }
+
+        /**
+         * 排序得分，越小越好：延迟中位数加上抖动，没有成功样本的排在最后
+         */
+        public double score() {
+            return samples == 0 ? Double.MAX_VALUE : medianMs + jitterMs;
+        }
+
+        @Override
+        public String toString() {
+            return backend + String.format(" %.1f±%.1fms", medianMs, jitterMs)
+                + (failures > 0 ? " 失败" + failures : "");
+        }
+    }
+
+    private static TapDispatcher instance;
+
+    // 未校准时的默认顺序
+    private volatile Backend[] order = {Backend.INJECT, Backend.ACCESSIBILITY, Backend.SHELL};
+    private final List<Calibration> calibrations = new ArrayList<>();
+    private final int[] consecutiveFailures = new int[Backend.values().length];
+    private final long[] disabledUntil = new long[Backend.values().length];
+    private volatile Backend lastBackend;
+
+    /**
+     * 获取全局实例
+     */
+    public static synchronized TapDispatcher getInstance() {
+        if (instance == null) {
+            instance = new TapDispatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * 点击，按顺序使用第一个可用且健康的方式，失败时立即尝试下一种
+     * @return 任一方式点击成功返回 true
+     */
+    public boolean tap(int x, int y) {
+        long start = System.nanoTime();
+        for (Backend backend : order) {
+            if (!isHealthy(backend) || !isAvailable(backend)) {
+                continue;
+            }
+            if (tapWith(backend, x, y)) {
+                onSuccess(backend);
+                PipelineMetrics.record(PipelineMetrics.Stage.TAP, start);
+                return true;
+            }
+            onFailure(backend);
+        }
+        Log.e(TAG, "所有点击方式均失败");
+        PipelineMetrics.recordError(PipelineMetrics.Stage.TAP);
+        return false;
+    }
+
+    /**
+     * 连续点击同一位置
+     * 首选方式为无障碍手势时交给 MyAccessibilityService 的点击序列，上一批手势完成的回调中立即派发下一批，
+     * 不占用调用方线程；其他方式没有完成回调，返回 false，由调用方逐次点击。
+     * @param intervalMs 相邻点击的间隔
+     * @param maxBatch 每批最多点击数，决定 stopRepeating() 之后最多还会点击多少次
+     * @param listener 序列结束时回调，可为 null
+     * @return 序列已开始返回 true
+     */
+    public boolean startRepeating(int x, int y, long intervalMs, int maxBatch,
+                                  MyAccessibilityService.GestureListener listener) {
+        if (getPreferredBackend() != Backend.ACCESSIBILITY) {
+            return false;
+        }
+        MyAccessibilityService service = MyAccessibilityService.getInstance();
+        if (service == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        if (!service.startTapSequence(new int[][]{{x, y}}, 0, intervalMs, maxBatch, listener)) {
+            onFailure(Backend.ACCESSIBILITY);
+            return false;
+        }
+        onSuccess(Backend.ACCESSIBILITY);
+        PipelineMetrics.record(PipelineMetrics.Stage.TAP, start);
+        return true;
+    }
+
+    /**
+     * 停止连续点击，已派发的一批点击会执行完
+     */
+    public void stopRepeating() {
+        MyAccessibilityService service = MyAccessibilityService.getInstance();
+        if (service != null) {
+            service.cancelTapSequence();
+        }
+    }
+
+    /**
+     * 当前排在最前面的可用且健康的方式，没有时返回 null
+     */
+    private Backend getPreferredBackend() {
+        for (Backend backend : order) {
+            if (isHealthy(backend) && isAvailable(backend)) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 最近一次点击成功使用的方式
+     */
+    public Backend getLastBackend() {
+        return lastBackend;
+    }
+
+    /**
+     * 点击方式在当前设备上是否可用
+     */
+    public static boolean isAvailable(Backend backend) {
+        switch (backend) {
+            case INJECT:
+                return InputInjector.isAvailable();
+            case ACCESSIBILITY:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                    && MyAccessibilityService.isServiceRunning();
+            case SHELL:
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 使用指定方式点击，返回时点击已送达（无障碍手势等待完成回调）
+     */
+    public static boolean tapWith(Backend backend, int x, int y) {
+        switch (backend) {
+            case INJECT:
+                return InputInjector.tap(x, y);
+            case ACCESSIBILITY:
+                return tapByAccessibility(x, y);
+            case SHELL:
+            default:
+                return ShizukuHelper.tapByShell(x, y);
+        }
+    }
+
+    private static boolean tapByAccessibility(int x, int y) {
+        MyAccessibilityService service = MyAccessibilityService.getInstance();
+        if (service == null) {
+            return false;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicBoolean completed = new AtomicBoolean(false);
+        boolean dispatched = service.dispatchTaps(new int[][]{{x, y}}, 0,
+            MyAccessibilityService.DEFAULT_TAP_DURATION_MS, new MyAccessibilityService.GestureListener() {
+                @Override
+                public void onCompleted(int tapCount) {
+                    completed.set(true);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onCancelled(int tapCount) {
+                    latch.countDown();
+                }
+            });
+        if (!dispatched) {
+            return false;
+        }
+        try {
+            return latch.await(ACCESSIBILITY_TIMEOUT_MS, TimeUnit.MILLISECONDS) && completed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized boolean isHealthy(Backend backend) {
+        return SystemClock.elapsedRealtime() >= disabledUntil[backend.ordinal()];
+    }
+
+    private synchronized void onSuccess(Backend backend) {
+        consecutiveFailures[backend.ordinal()] = 0;
+        lastBackend = backend;
+    }
+
+    private synchronized void onFailure(Backend backend) {
+        int index = backend.ordinal();
+        if (++consecutiveFailures[index] >= MAX_CONSECUTIVE_FAILURES) {
+            consecutiveFailures[index] = 0;
+            disabledUntil[index] = SystemClock.elapsedRealtime() + FAILURE_COOLDOWN_MS;
+            Log.e(TAG, backend + " 连续失败 " + MAX_CONSECUTIVE_FAILURES + " 次，暂停使用 "
+                + FAILURE_COOLDOWN_MS / 1000 + " 秒");
+        }
+    }
+
+    /**
+     * 应用校准结果，按得分重新排序；未参与校准的方式排在最后
+     */
+    public synchronized void apply(Collection<Calibration> results) {
+        calibrations.clear();
+        calibrations.addAll(results);
+        Collections.sort(calibrations, (a, b) -> Double.compare(a.score(), b.score()));
+        List<Backend> sorted = new ArrayList<>();
+        for (Calibration calibration : calibrations) {
+            sorted.add(calibration.backend);
+        }
+        for (Backend backend : order) {
+            if (!sorted.contains(backend)) {
+                sorted.add(backend);
+            }
+        }
+        order = sorted.toArray(new Backend[0]);
+        for (int i = 0; i < disabledUntil.length; i++) {
+            disabledUntil[i] = 0;
+            consecutiveFailures[i] = 0;
+        }
+        Log.d(TAG, "点击方式顺序: " + getSummary());
+    }
+
+    /**
+     * 校准结果摘要
+     */
+    public synchronized String getSummary() {
+        if (calibrations.isEmpty()) {
+            return "未校准";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Calibration calibration : calibrations) {
+            if (sb.length() > 0) {
+                sb.append("，");
+            }
+            sb.append(calibration);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 从 ClickerPrefs 恢复校准结果
+     */
+    public void load(Context context) {
+        String json = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE)
+            .getString(KEY_TAP_CALIBRATION, "");
+        if (json.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject root = new JSONObject(json);
+            List<Calibration> results = new ArrayList<>();
+            for (Backend backend : Backend.values()) {
+                JSONObject item = root.optJSONObject(backend.name());
+                if (item != null) {
+                    results.add(new Calibration(backend, item.getDouble("median"), item.getDouble("jitter"),
+                        item.getInt("samples"), item.getInt("failures")));
+                }
+            }
+            apply(results);
+        } catch (JSONException e) {
+            Log.e(TAG, "读取点击校准结果失败", e);
+        }
+    }
+
+    /**
+     * 保存校准结果到 ClickerPrefs
+     */
+    public void save(Context context, Collection<Calibration> results) {
+        try {
+            JSONObject root = new JSONObject();
+            for (Calibration calibration : results) {
+                JSONObject item = new JSONObject();
+                item.put("median", calibration.medianMs);
+                item.put("jitter", calibration.jitterMs);
+                item.put("samples", calibration.samples);
+                item.put("failures", calibration.failures);
+                root.put(calibration.backend.name(), item);
+            }
+            context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(KEY_TAP_CALIBRATION, root.toString())
+                .apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "保存点击校准结果失败", e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.kryp.test;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 模板图片库
+ * 模板以 PNG 保存在应用私有目录的 templates 子目录中，尺寸为屏幕坐标下的尺寸；
+ * 规则中的模板触发条件用文件名（可省略 .png）或绝对路径引用模板。
+ * 加载后的模板按名称和缩放比例缓存，截图被缩小时使用缩小后的模板匹配。
+ */
+public class TemplateLibrary {
+    private static final String TAG = "TemplateLibrary";
+    private static final String TEMPLATES_DIR = "templates";
+
+    private static TemplateLibrary instance;
+
+    private File directory;
+    private final Map<String, TemplateMatcher.Template> cache = new HashMap<>();
+
+    /**
+     * 获取全局实例
+     */
+    public static synchronized TemplateLibrary getInstance() {
+        if (instance == null) {
+            instance = new TemplateLibrary();
+        }
+        return instance;
+    }
+
+    /**
+     * 初始化模板目录，重复调用无副作用
+     */
+    public synchronized void init(Context context) {
+        if (directory != null) {
+            return;
+        }
+        directory = new File(context.getFilesDir(), TEMPLATES_DIR);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "创建模板目录失败: " + directory);
+        }
+    }
+
+    /**
+     * 保存模板图片
+     * @param bitmap 屏幕坐标下的模板图片
+     * @return 模板名称，失败返回 null
+     */
+    public synchronized String save(Bitmap bitmap) {
+        if (directory == null) {
+            Log.e(TAG, "模板库未初始化");
+            return null;
+        }
+        String name = "template-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(directory, name + ".png");
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                Log.e(TAG, "编码模板失败");
+                return null;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "保存模板失败", e);
+            return null;
+        }
+        cache.clear();
+        return name;
+    }
+
+    /**
+     * 获取模板
+     * @param name 模板名称或图片绝对路径
+     * @param scale 截图坐标与屏幕坐标之比
+     * @return 模板，文件不存在或无法解码时返回 null
+     */
+    public synchronized TemplateMatcher.Template get(String name, float scale) {
+        String key = name + "@" + scale;
+        if (cache.containsKey(key)) {
+            return cache.get(key);
+        }
+        TemplateMatcher.Template template = scale == 1f ? load(name) : get(name, 1f);
+        if (template != null && scale != 1f) {
+            template = template.scaled(scale);
+        }
+        cache.put(key, template);
+        return template;
+    }
+
+    private TemplateMatcher.Template load(String name) {
+        File file = resolve(name);
+        if (file == null || !file.isFile()) {
+            Log.e(TAG, "模板不存在: " + name);
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+        if (bitmap == null) {
+            Log.e(TAG, "无法解码模板: " + file);
+            return null;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+        TemplateMatcher.Template template = TemplateMatcher.Template.fromPixels(pixels, width, height);
+        if (!template.isDistinctive()) {
+            Log.e(TAG, "模板 " + name + " 几乎是纯色，匹配结果不可靠");
+        }
+        Log.d(TAG, "已加载模板 " + name + ": " + width + "x" + height);
+        return template;
+    }
+
+    private File resolve(String name) {
+        if (name.startsWith("/")) {
+            return new File(name);
+        }
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory, name.endsWith(".png") ? name : name + ".png");
+    }
+}
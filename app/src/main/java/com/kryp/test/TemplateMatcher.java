@@ -0,0 +1,345 @@
+package com.kryp.test;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 模板匹配
+ * 在区域灰度图中查找模板图片，相似度为零均值归一化互相关 (NCC)，取值 -1 ~ 1，1 表示完全一致，
+ * 对整体亮度、对比度变化不敏感。为了在几毫秒内完成，先把区域和模板逐级缩小一半构成金字塔，
+ * 在最粗一级穷举所有位置，再把得分最高的几个候选逐级放大、只在附近几个像素内细化，
+ * 最终只有最好的一个候选在全分辨率下计算少量位置。
+ * 内部复用缓冲区，不是线程安全的。本类不依赖 Android API。
+ */
+public class TemplateMatcher {
+    // 最粗一级模板的最短边下限
+    private static final int MIN_LEVEL_SIZE = 8;
+    private static final int MAX_LEVELS = 5;
+    // 粗搜索保留的候选数
+    private static final int CANDIDATES = 4;
+    // 逐级细化时的搜索半径
+    private static final int REFINE_RADIUS = 2;
+    // 模板亮度方差下限（每像素），低于该值的模板几乎是纯色，无法可靠匹配
+    private static final double MIN_TEMPLATE_VARIANCE = 4.0;
+
+    /**
+     * 模板：灰度金字塔
+     */
+    public static class Template {
+        public final int width;
+        public final int height;
+        final int[][] levels;
+        final int[] widths;
+        final int[] heights;
+        // 各级像素和与平方和
+        final long[] sums;
+        final long[] squares;
+
+        private Template(int[] gray, int width, int height) {
+            this.width = width;
+            this.height = height;
+            int count = 1;
+            int w = width;
+            int h = height;
+            while (count < MAX_LEVELS && Math.min(w, h) / 2 >= MIN_LEVEL_SIZE) {
+                w /= 2;
+                h /= 2;
+                count++;
+            }
+            levels = new int[count][];
+            widths = new int[count];
+            heights = new int[count];
+            levels[0] = gray;
+            widths[0] = width;
+            heights[0] = height;
+            for (int i = 1; i < count; i++) {
+                widths[i] = widths[i - 1] / 2;
+                heights[i] = heights[i - 1] / 2;
+                levels[i] = halve(levels[i - 1], widths[i - 1], heights[i - 1], null);
+            }
+            sums = new long[count];
+            squares = new long[count];
+            for (int i = 0; i < count; i++) {
+                int n = widths[i] * heights[i];
+                for (int j = 0; j < n; j++) {
+                    int value = levels[i][j];
+                    sums[i] += value;
+                    squares[i] += (long) value * value;
+                }
+            }
+        }
+
+        /**
+         * 由 ARGB 像素创建模板
+         */
+        public static Template fromPixels(int[] argb, int width, int height) {
+            return new Template(toGray(argb, width * height, null), width, height);
+        }
+
+        /**
+         * 缩放后的模板，用于截图被缩小（屏幕录制缩放）时匹配
+         * @param factor 缩放比例，1 时返回自身
+         */
+        public Template scaled(float factor) {
+            if (factor == 1f) {
+                return this;
+            }
+            int w = Math.max(1, Math.round(width * factor));
+            int h = Math.max(1, Math.round(height * factor));
+            int[] gray = new int[w * h];
+            for (int y = 0; y < h; y++) {
+                int y0 = (int) ((long) y * height / h);
+                int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * height / h));
+                for (int x = 0; x < w; x++) {
+                    int x0 = (int) ((long) x * width / w);
+                    int x1 = Math.max(x0 + 1, (int) ((long) (x + 1) * width / w));
+                    int sum = 0;
+                    for (int sy = y0; sy < y1; sy++) {
+                        for (int sx = x0; sx < x1; sx++) {
+                            sum += levels[0][sy * width + sx];
+                        }
+                    }
+                    gray[y * w + x] = sum / ((y1 - y0) * (x1 - x0));
+                }
+            }
+            return new Template(gray, w, h);
+        }
+
+        /**
+         * 模板是否有足够的纹理用于匹配
+         */
+        public boolean isDistinctive() {
+            int n = width * height;
+            return (squares[0] - (double) sums[0] * sums[0] / n) / n >= MIN_TEMPLATE_VARIANCE;
+        }
+    }
+
+    /**
+     * 匹配结果，坐标为模板左上角在区域中的位置
+     */
+    public static class Match {
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+        public final float score;
+
+        Match(int x, int y, int width, int height, float score) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.score = score;
+        }
+
+        public float centerX() {
+            return x + width / 2f;
+        }
+
+        public float centerY() {
+            return y + height / 2f;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "(%d, %d) %.3f", x, y, score);
+        }
+    }
+
+    private int[][] regionLevels = new int[MAX_LEVELS][];
+    private final int[] candidateX = new int[CANDIDATES];
+    private final int[] candidateY = new int[CANDIDATES];
+    private final double[] candidateScore = new double[CANDIDATES];
+    private final int[] candidatePoint = new int[2];
+
+    /**
+     * 在区域中查找模板
+     * @param template 模板
+     * @param argb 区域像素 (ARGB)
+     * @param width 区域宽度
+     * @param height 区域高度
+     * @return 得分最高的位置，区域比模板小时返回 null
+     */
+    public Match match(Template template, int[] argb, int width, int height) {
+        if (width < template.width || height < template.height) {
+            return null;
+        }
+        // 区域金字塔层数与模板一致，但不能让区域在粗级上比模板还小
+        int levels = 1;
+        int w = width;
+        int h = height;
+        int[] widths = new int[template.levels.length];
+        int[] heights = new int[template.levels.length];
+        widths[0] = width;
+        heights[0] = height;
+        while (levels < template.levels.length
+                && w / 2 >= template.widths[levels] && h / 2 >= template.heights[levels]) {
+            w /= 2;
+            h /= 2;
+            widths[levels] = w;
+            heights[levels] = h;
+            levels++;
+        }
+        regionLevels[0] = toGray(argb, width * height, regionLevels[0]);
+        for (int i = 1; i < levels; i++) {
+            regionLevels[i] = halve(regionLevels[i - 1], widths[i - 1], heights[i - 1], regionLevels[i]);
+        }
+
+        // 最粗一级穷举
+        int top = levels - 1;
+        Arrays.fill(candidateScore, Double.NEGATIVE_INFINITY);
+        int maxX = widths[top] - template.widths[top];
+        int maxY = heights[top] - template.heights[top];
+        for (int y = 0; y <= maxY; y++) {
+            for (int x = 0; x <= maxX; x++) {
+                double score = ncc(regionLevels[top], widths[top], template, top, x, y);
+                offerCandidate(x, y, score);
+            }
+        }
+
+        // 各候选逐级细化到第 1 级，最好的一个再在全分辨率下细化
+        int bestX = 0;
+        int bestY = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < CANDIDATES; c++) {
+            if (candidateScore[c] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            candidatePoint[0] = candidateX[c];
+            candidatePoint[1] = candidateY[c];
+            double score = candidateScore[c];
+            for (int level = top - 1; level >= 1; level--) {
+                score = refine(template, level, widths[level], heights[level], REFINE_RADIUS);
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestX = candidatePoint[0];
+                bestY = candidatePoint[1];
+            }
+        }
+        if (top > 0) {
+            // 上一级已经细化过，放大后的误差不超过 1 个像素
+            candidatePoint[0] = bestX;
+            candidatePoint[1] = bestY;
+            bestScore = refine(template, 0, width, height, 1);
+            bestX = candidatePoint[0];
+            bestY = candidatePoint[1];
+        }
+        return new Match(bestX, bestY, template.width, template.height, (float) bestScore);
+    }
+
+    /**
+     * 把 candidatePoint 放大到 level 级，在附近 radius 个像素内找得分最高的位置并写回 candidatePoint
+     * @return 最高得分
+     */
+    private double refine(Template template, int level, int width, int height, int radius) {
+        int cx = candidatePoint[0] * 2;
+        int cy = candidatePoint[1] * 2;
+        int limitX = width - template.widths[level];
+        int limitY = height - template.heights[level];
+        double score = Double.NEGATIVE_INFINITY;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                int px = cx + dx;
+                int py = cy + dy;
+                if (px < 0 || py < 0 || px > limitX || py > limitY) {
+                    continue;
+                }
+                double s = ncc(regionLevels[level], width, template, level, px, py);
+                if (s > score) {
+                    score = s;
+                    candidatePoint[0] = px;
+                    candidatePoint[1] = py;
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 保留得分最高的几个候选，相邻位置只保留一个
+     */
+    private void offerCandidate(int x, int y, double score) {
+        int weakest = 0;
+        for (int i = 0; i < CANDIDATES; i++) {
+            if (Math.abs(candidateX[i] - x) <= 1 && Math.abs(candidateY[i] - y) <= 1
+                    && candidateScore[i] != Double.NEGATIVE_INFINITY) {
+                if (score > candidateScore[i]) {
+                    candidateX[i] = x;
+                    candidateY[i] = y;
+                    candidateScore[i] = score;
+                }
+                return;
+            }
+            if (candidateScore[i] < candidateScore[weakest]) {
+                weakest = i;
+            }
+        }
+        if (score > candidateScore[weakest]) {
+            candidateX[weakest] = x;
+            candidateY[weakest] = y;
+            candidateScore[weakest] = score;
+        }
+    }
+
+    /**
+     * 模板在 (x, y) 处的零均值归一化互相关
+     */
+    private static double ncc(int[] image, int imageWidth, Template template, int level, int x, int y) {
+        int tw = template.widths[level];
+        int th = template.heights[level];
+        int[] t = template.levels[level];
+        long dot = 0;
+        long sumI = 0;
+        long sumI2 = 0;
+        for (int row = 0; row < th; row++) {
+            int io = (y + row) * imageWidth + x;
+            int to = row * tw;
+            for (int col = 0; col < tw; col++) {
+                int iv = image[io + col];
+                dot += (long) iv * t[to + col];
+                sumI += iv;
+                sumI2 += (long) iv * iv;
+            }
+        }
+        long sumT = template.sums[level];
+        double n = tw * th;
+        double varI = sumI2 - sumI * (double) sumI / n;
+        double varT = template.squares[level] - sumT * (double) sumT / n;
+        if (varI <= 1e-6 || varT <= 1e-6) {
+            return 0;
+        }
+        return (dot - sumI * (double) sumT / n) / Math.sqrt(varI * varT);
+    }
+
+    private static int[] toGray(int[] argb, int count, int[] out) {
+        if (out == null || out.length < count) {
+            out = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            int pixel = argb[i];
+            out[i] = (((pixel >> 16) & 0xFF) * 77 + ((pixel >> 8) & 0xFF) * 150 + (pixel & 0xFF) * 29) >> 8;
+        }
+        return out;
+    }
+
+    /**
+     * 宽高各缩小一半，每 2x2 取平均
+     */
+    private static int[] halve(int[] src, int width, int height, int[] out) {
+        int w = width / 2;
+        int h = height / 2;
+        if (out == null || out.length < w * h) {
+            out = new int[w * h];
+        }
+        for (int y = 0; y < h; y++) {
+            int row0 = 2 * y * width;
+            int row1 = row0 + width;
+            for (int x = 0; x < w; x++) {
+                out[y * w + x] = (src[row0 + 2 * x] + src[row0 + 2 * x + 1]
+                    + src[row1 + 2 * x] + src[row1 + 2 * x + 1]) >> 2;
+            }
+        }
+        return out;
+    }
+}
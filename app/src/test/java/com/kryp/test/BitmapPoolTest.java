@@ -0,0 +1,99 @@
+package com.kryp.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 截图循环稳定运行后不再分配 Bitmap
+ * 用合成的 screencap 原始输出反复走整帧解码、区域裁剪和流式区域解码，预热之后对象池不应再有未命中
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class BitmapPoolTest {
+    private static final int WIDTH = 540;
+    private static final int HEIGHT = 1200;
+    // Android 9 起的原始输出头部：宽、高、格式、色彩空间
+    private static final int HEADER_SIZE = 16;
+    private static final int WARM_UP_FRAMES = 3;
+    private static final int FRAMES = 1000;
+
+    private final StreamingFrameDecoder decoder = new StreamingFrameDecoder();
+    private final FrameRegion top = FrameRegion.topRatio(0.3f);
+    private final int[] bounds = new int[4];
+    private byte[] rawFrame;
+
+    @Before
+    public void setUp() {
+        BitmapPool.getInstance().clear();
+        rawFrame = createRawFrame(WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void steadyStateCaptureLoopHasNoPoolMisses() throws IOException {
+        BitmapPool pool = BitmapPool.getInstance();
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            runFrame();
+        }
+        long misses = pool.getMissCount();
+        long hits = pool.getHitCount();
+
+        for (int i = 0; i < FRAMES; i++) {
+            runFrame();
+        }
+
+        assertEquals("预热后对象池出现未命中", misses, pool.getMissCount());
+        assertTrue(pool.getHitCount() - hits >= FRAMES * 4L);
+    }
+
+    /**
+     * 一帧的处理：整帧解码、裁剪两个区域、流式解码顶部区域，全部用完后归还
+     */
+    private void runFrame() throws IOException {
+        Bitmap frame = ScreenshotHelper.decodeRaw(rawFrame, rawFrame.length, null);
+        assertNotNull(frame);
+        Bitmap topCrop = ScreenshotHelper.cropTopLeft(frame, 0.3f);
+        Bitmap button = ScreenshotHelper.cropBitmap(frame, 120, 160, 300, 70);
+        assertNotNull(button);
+        ScreenshotHelper.releaseBitmap(button);
+        ScreenshotHelper.releaseBitmap(topCrop);
+        ScreenshotHelper.releaseBitmap(frame);
+
+        StreamingFrameDecoder.DecodedRegion decoded = decoder.decodeRaw(
+            new ByteArrayInputStream(rawFrame), HEADER_SIZE, top);
+        assertNotNull(decoded);
+        Bitmap region = ScreenshotHelper.toPooledBitmap(decoded, bounds);
+        assertEquals(WIDTH, bounds[0]);
+        assertEquals(HEIGHT, bounds[1]);
+        ScreenshotHelper.releaseBitmap(region);
+    }
+
+    /**
+     * 合成 screencap 原始输出：灰色背景上一个深色按钮
+     */
+    private static byte[] createRawFrame(int width, int height) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(width).putInt(height).putInt(StreamingFrameDecoder.RAW_FORMAT_RGBA_8888).putInt(0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean button = x >= 120 && x < 420 && y >= 160 && y < 230;
+                byte value = (byte) (button ? 0x30 : 0xE0);
+                buffer.put(value).put(value).put(value).put((byte) 0xFF);
+            }
+        }
+        return buffer.array();
+    }
+}
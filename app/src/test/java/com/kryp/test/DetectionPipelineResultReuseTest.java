@@ -0,0 +1,72 @@
+package com.kryp.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+
+/**
+ * 画面未变化时沿用识别结果
+ * 识别超时或失败的结果不能被沿用，否则画面不变时该区域的文字触发条件再也不会成立
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class DetectionPipelineResultReuseTest {
+    private static final String RULES = "{\"states\": [{\"name\": \"main\","
+        + " \"regions\": [{\"name\": \"top\", \"left\": 0, \"top\": 0, \"right\": 1, \"bottom\": 0.3}],"
+        + " \"rules\": [{\"trigger\": {\"type\": \"text\", \"region\": \"top\", \"keywords\": [\"自动\"]},"
+        + " \"actions\": [{\"type\": \"tap\", \"x\": 100, \"y\": 100}]}]}]}";
+
+    private DetectionPipeline pipeline;
+    private RuleSet.State state;
+    private RuleSet.Region region;
+    private Bitmap bitmap;
+
+    @Before
+    public void setUp() throws JSONException {
+        DetectionPipeline.Config config = new DetectionPipeline.Config();
+        config.rules = RuleSet.fromJson(RULES);
+        pipeline = new DetectionPipeline(config, null, null);
+        state = config.rules.getInitialState();
+        region = state.findRegion("top");
+        bitmap = Bitmap.createBitmap(200, 60, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.GRAY);
+    }
+
+    @Test
+    public void failedRecognitionIsNotReusedOnUnchangedFrame() {
+        DetectionPipeline.RegionImage first = newImage();
+        assertFalse(pipeline.reuseLastResult(state, first));
+        // 模拟识别超时
+        pipeline.storeResult(state, first, null);
+        assertSame(OcrResult.EMPTY, first.result);
+
+        // 画面未变化，仍需重新识别
+        DetectionPipeline.RegionImage second = newImage();
+        assertFalse(pipeline.reuseLastResult(state, second));
+        OcrResult recognized = new OcrResult("自动", Collections.<OcrResult.Block>emptyList());
+        pipeline.storeResult(state, second, recognized);
+
+        // 识别成功后画面未变化时沿用
+        DetectionPipeline.RegionImage third = newImage();
+        assertTrue(pipeline.reuseLastResult(state, third));
+        assertSame(recognized, third.result);
+    }
+
+    private DetectionPipeline.RegionImage newImage() {
+        DetectionPipeline.RegionImage image = new DetectionPipeline.RegionImage(region, new int[]{0, 0, 200, 60});
+        image.bitmap = bitmap;
+        return image;
+    }
+}
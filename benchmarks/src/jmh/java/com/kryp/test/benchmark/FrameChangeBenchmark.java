@@ -0,0 +1,66 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.FrameChangeGate;
+import com.kryp.test.FrameHash;
+import com.kryp.test.FrameRegion;
+import com.kryp.test.StreamingFrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 像素哈希与画面变化检测
+ * 以顶部 30% 区域为输入：静止画面连续判定，以及两张样例交替出现时的判定。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameChangeBenchmark {
+    private final FrameChangeGate staticGate = new FrameChangeGate(FrameChangeGate.DEFAULT_THRESHOLD);
+    private final FrameChangeGate alternatingGate = new FrameChangeGate(FrameChangeGate.DEFAULT_THRESHOLD);
+
+    private int[] idle;
+    private int[] changed;
+    private int width;
+    private int height;
+    private boolean flip;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FrameRegion top = FrameRegion.topRatio(0.3f);
+        StreamingFrameDecoder decoder = new StreamingFrameDecoder();
+        StreamingFrameDecoder.DecodedRegion decoded =
+            decoder.decodePng(new ByteArrayInputStream(SampleFrames.png(SampleFrames.IDLE)), top);
+        width = decoded.width;
+        height = decoded.height;
+        idle = decoded.pixels.clone();
+        decoded = decoder.decodePng(new ByteArrayInputStream(SampleFrames.png(SampleFrames.CHANGED)), top);
+        changed = decoded.pixels.clone();
+    }
+
+    @Benchmark
+    public long hash64() {
+        return FrameHash.hash64(idle, width, height);
+    }
+
+    @Benchmark
+    public boolean gateStatic() {
+        return staticGate.hasChanged(idle, width, height);
+    }
+
+    @Benchmark
+    public boolean gateAlternating() {
+        flip = !flip;
+        return alternatingGate.hasChanged(flip ? idle : changed, width, height);
+    }
+}
@@ -0,0 +1,63 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.FrameRegion;
+import com.kryp.test.StreamingFrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 截图解码：PNG 与原始格式，整屏与顶部区域
+ * 区域解码在最后一行后停止读取，两者的差距就是按区域截图节省的时间。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrameDecodeBenchmark {
+    @Param({"full", "top30", "button"})
+    public String region;
+
+    private final StreamingFrameDecoder decoder = new StreamingFrameDecoder();
+    private byte[] png;
+    private byte[] raw;
+    private FrameRegion frameRegion;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        png = SampleFrames.png(SampleFrames.IDLE);
+        raw = SampleFrames.raw(SampleFrames.IDLE);
+        switch (region) {
+            case "top30":
+                frameRegion = FrameRegion.topRatio(0.3f);
+                break;
+            case "button":
+                frameRegion = FrameRegion.ofPixels(240, 320, 840, 460);
+                break;
+            case "full":
+            default:
+                frameRegion = FrameRegion.ofRatio(0f, 0f, 1f, 1f);
+                break;
+        }
+    }
+
+    @Benchmark
+    public int[] png() throws IOException {
+        return decoder.decodePng(new ByteArrayInputStream(png), frameRegion).pixels;
+    }
+
+    @Benchmark
+    public int[] raw() throws IOException {
+        return decoder.decodeRaw(new ByteArrayInputStream(raw), SampleFrames.RAW_HEADER_SIZE, frameRegion).pixels;
+    }
+}
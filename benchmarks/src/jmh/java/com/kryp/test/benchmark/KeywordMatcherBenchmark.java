@@ -0,0 +1,87 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.KeywordMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCR 文本关键字匹配
+ * 对比自动机一次扫描与逐个 String.contains 的耗时随关键字数量的变化。
+ * 文本模拟 OCR 输出：中英混排、夹杂空格和易混字符。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KeywordMatcherBenchmark {
+    private static final String ALPHABET = "自动点击进行中停止开始领取奖励确定取消返回关闭继续挑战升级任务签到商店背包设置";
+
+    @Param({"2", "50", "500"})
+    public int keywordCount;
+
+    private KeywordMatcher matcher;
+    private List<String> keywords;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(7);
+        keywords = new ArrayList<>();
+        keywords.add("自动");
+        keywords.add("进行中");
+        while (keywords.size() < keywordCount) {
+            keywords.add(randomWord(random, 2 + random.nextInt(4)));
+        }
+        matcher = new KeywordMatcher(keywords);
+
+        StringBuilder sb = new StringBuilder();
+        for (int line = 0; line < 12; line++) {
+            sb.append(randomWord(random, 6 + random.nextInt(10)));
+            sb.append(line % 3 == 0 ? " Lv.1O " : "　x").append(random.nextInt(100)).append('\n');
+        }
+        sb.append("自 动 点 击");
+        text = sb.toString();
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public boolean[] automaton() {
+        return matcher.findMatched(text);
+    }
+
+    @Benchmark
+    public Object automatonFindAll() {
+        return matcher.findAll(text);
+    }
+
+    /**
+     * 旧做法：逐个关键字 contains，不做空白和易混字符处理
+     */
+    @Benchmark
+    public boolean[] contains() {
+        boolean[] matched = new boolean[keywords.size()];
+        for (int i = 0; i < matched.length; i++) {
+            matched[i] = text.contains(keywords.get(i));
+        }
+        return matched;
+    }
+}
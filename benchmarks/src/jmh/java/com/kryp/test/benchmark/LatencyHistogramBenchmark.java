@@ -0,0 +1,44 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.LatencyHistogram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 延迟统计的记录开销
+ * 流水线每个阶段都会记录，单线程和多个阶段线程同时记录时都应远小于 1 微秒。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyHistogramBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long value = 12345678;
+
+    @Benchmark
+    public void record() {
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        histogram.record((value >>> 40) * 1000);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public void recordContended() {
+        histogram.record(System.nanoTime() & 0xFFFFFFFL);
+    }
+
+    @Benchmark
+    public long percentile() {
+        return histogram.getPercentileMicros(0.99);
+    }
+}
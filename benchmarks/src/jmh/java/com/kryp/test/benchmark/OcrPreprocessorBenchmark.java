@@ -0,0 +1,57 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.FrameRegion;
+import com.kryp.test.OcrPreprocessor;
+import com.kryp.test.StreamingFrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCR 预处理
+ * 以顶部 30% 区域为输入，比较各预处理方式和缩放比例的耗时；识别耗时的变化需要在设备上用 OCR 校准测量。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OcrPreprocessorBenchmark {
+    @Param({"NONE", "GRAYSCALE", "BINARY"})
+    public String mode;
+
+    @Param({"1.0", "0.5", "0.25"})
+    public float scale;
+
+    private OcrPreprocessor preprocessor;
+    private int[] pixels;
+    private int[] output;
+    private int width;
+    private int height;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StreamingFrameDecoder decoder = new StreamingFrameDecoder();
+        StreamingFrameDecoder.DecodedRegion decoded = decoder.decodePng(
+            new ByteArrayInputStream(SampleFrames.png(SampleFrames.CHANGED)), FrameRegion.topRatio(0.3f));
+        width = decoded.width;
+        height = decoded.height;
+        pixels = decoded.pixels.clone();
+        preprocessor = new OcrPreprocessor(OcrPreprocessor.Mode.valueOf(mode), scale);
+    }
+
+    @Benchmark
+    public int[] process() {
+        output = preprocessor.process(pixels, width, height, output);
+        return output;
+    }
+}
@@ -0,0 +1,71 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.FrameRegion;
+import com.kryp.test.StreamingFrameDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区域计算与提取
+ * 区域换算和合并在每帧都会执行；提取对应流水线从整屏中裁出监视区域（JVM 上以整行复制代替 Bitmap 绘制）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegionBenchmark {
+    private final FrameRegion top = FrameRegion.topRatio(0.3f);
+    private final FrameRegion button = FrameRegion.ofPixels(240, 320, 840, 460);
+    private final FrameRegion title = FrameRegion.ofPixels(0, 80, 1080, 240);
+
+    private int[] frame;
+    private int frameWidth;
+    private int frameHeight;
+    private int[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StreamingFrameDecoder.DecodedRegion decoded = SampleFrames.decode(SampleFrames.IDLE);
+        frameWidth = decoded.width;
+        frameHeight = decoded.height;
+        frame = decoded.pixels.clone();
+        out = new int[frameWidth * frameHeight];
+    }
+
+    @Benchmark
+    public int[] resolve() {
+        return top.resolve(frameWidth, frameHeight);
+    }
+
+    @Benchmark
+    public FrameRegion union() {
+        return button.union(title);
+    }
+
+    @Benchmark
+    public int[] extractTop() {
+        return extract(top.resolve(frameWidth, frameHeight));
+    }
+
+    @Benchmark
+    public int[] extractButton() {
+        return extract(button.resolve(frameWidth, frameHeight));
+    }
+
+    private int[] extract(int[] bounds) {
+        int width = bounds[2] - bounds[0];
+        for (int y = bounds[1]; y < bounds[3]; y++) {
+            System.arraycopy(frame, y * frameWidth + bounds[0], out, (y - bounds[1]) * width, width);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,104 @@
+package com.kryp.test.benchmark;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 生成基准测试用的样例截图
+ * 模拟 1080x2400 竖屏界面：状态栏、标题栏、顶部按钮、列表和带噪点的渐变背景，
+ * 以 RGBA PNG 保存（与 screencap -p 的格式一致）。两张图只有顶部按钮文字不同，用于变化检测。
+ * 生成结果已提交到 src/jmh/resources/frames，修改本类后执行 ./gradlew :benchmarks:generateSampleFrames 重新生成。
+ */
+public class SampleFrameGenerator {
+    public static final int WIDTH = 1080;
+    public static final int HEIGHT = 2400;
+
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "src/jmh/resources/frames");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+        write(render("AUTO CLICK"), new File(dir, SampleFrames.IDLE));
+        write(render("RUNNING..."), new File(dir, SampleFrames.CHANGED));
+    }
+
+    private static BufferedImage render(String buttonLabel) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        // 背景渐变
+        g.setPaint(new GradientPaint(0, 0, new Color(0x1E3C72), 0, HEIGHT, new Color(0x2A5298)));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+
+        // 状态栏和标题栏
+        g.setColor(new Color(0x101820));
+        g.fillRect(0, 0, WIDTH, 80);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 36));
+        g.drawString("12:34", 40, 55);
+        g.drawString("5G  87%", WIDTH - 200, 55);
+        g.setColor(new Color(0x2C3E50));
+        g.fillRect(0, 80, WIDTH, 160);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 56));
+        g.drawString("Sample Game", 48, 185);
+
+        // 顶部按钮（OCR 监视区域内）
+        g.setColor(new Color(0xF39C12));
+        g.fillRoundRect(240, 320, 600, 140, 40, 40);
+        g.setColor(Color.BLACK);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 64));
+        g.drawString(buttonLabel, 300, 415);
+
+        // 列表
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 44));
+        for (int i = 0; i < 12; i++) {
+            int top = 560 + i * 150;
+            g.setColor(new Color(255, 255, 255, 40));
+            g.fillRoundRect(40, top, WIDTH - 80, 130, 24, 24);
+            g.setColor(new Color(0xECF0F1));
+            g.drawString("Item " + (i + 1) + "  reward x" + (i * 37 % 100), 80, top + 80);
+        }
+
+        // 底部导航
+        g.setColor(new Color(0x101820));
+        g.fillRect(0, HEIGHT - 140, WIDTH, 140);
+        g.dispose();
+
+        // 背景噪点，使压缩率接近真实截图
+        Random random = new Random(42);
+        for (int y = 240; y < HEIGHT - 140; y++) {
+            for (int x = 0; x < WIDTH; x += 3) {
+                int argb = image.getRGB(x, y);
+                int delta = random.nextInt(7) - 3;
+                int r = clamp(((argb >> 16) & 0xFF) + delta);
+                int gr = clamp(((argb >> 8) & 0xFF) + delta);
+                int b = clamp((argb & 0xFF) + delta);
+                image.setRGB(x, y, 0xFF000000 | (r << 16) | (gr << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static void write(BufferedImage image, File file) throws IOException {
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("没有可用的 PNG 编码器");
+        }
+        System.out.println(file + ": " + file.length() + " 字节");
+    }
+}
@@ -0,0 +1,79 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.FrameRegion;
+import com.kryp.test.StreamingFrameDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 样例截图
+ * 从 classpath 的 frames 目录读取提交在仓库中的 PNG，并按需转换为 screencap 原始格式。
+ */
+public final class SampleFrames {
+    public static final String IDLE = "idle.png";
+    public static final String CHANGED = "changed.png";
+
+    // 新版 screencap 原始输出的头部：宽、高、格式、色彩空间，各 4 字节小端
+    public static final int RAW_HEADER_SIZE = 16;
+
+    private SampleFrames() {
+    }
+
+    /**
+     * 读取样例 PNG
+     */
+    public static byte[] png(String name) throws IOException {
+        try (InputStream in = SampleFrames.class.getResourceAsStream("/frames/" + name)) {
+            if (in == null) {
+                throw new IOException("找不到样例截图: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 解码整张样例截图
+     */
+    public static StreamingFrameDecoder.DecodedRegion decode(String name) throws IOException {
+        return new StreamingFrameDecoder().decodePng(new ByteArrayInputStream(png(name)),
+            FrameRegion.ofRatio(0f, 0f, 1f, 1f));
+    }
+
+    /**
+     * 将样例截图转换为 screencap 原始格式 (RGBA_8888)
+     */
+    public static byte[] raw(String name) throws IOException {
+        StreamingFrameDecoder.DecodedRegion frame = decode(name);
+        int width = frame.width;
+        int height = frame.height;
+        byte[] raw = new byte[RAW_HEADER_SIZE + width * height * 4];
+        writeIntLittleEndian(raw, 0, width);
+        writeIntLittleEndian(raw, 4, height);
+        writeIntLittleEndian(raw, 8, StreamingFrameDecoder.RAW_FORMAT_RGBA_8888);
+        int p = RAW_HEADER_SIZE;
+        for (int i = 0; i < width * height; i++) {
+            int argb = frame.pixels[i];
+            raw[p++] = (byte) (argb >> 16);
+            raw[p++] = (byte) (argb >> 8);
+            raw[p++] = (byte) argb;
+            raw[p++] = (byte) (argb >>> 24);
+        }
+        return raw;
+    }
+
+    private static void writeIntLittleEndian(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+        b[off + 2] = (byte) (value >> 16);
+        b[off + 3] = (byte) (value >>> 24);
+    }
+}
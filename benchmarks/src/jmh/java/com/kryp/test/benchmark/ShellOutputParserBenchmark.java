@@ -0,0 +1,43 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.ShellOutputParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shell 输出解析：wm size
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShellOutputParserBenchmark {
+    private final String physical = "Physical size: 1080x2400\n";
+    private final String overridden = "Physical size: 1440x3200\nOverride size: 1080x2400\n";
+
+    @Benchmark
+    public int[] wmSize() {
+        return ShellOutputParser.parseWmSize(physical);
+    }
+
+    @Benchmark
+    public int[] wmSizeOverride() {
+        return ShellOutputParser.parseWmSize(overridden);
+    }
+
+    /**
+     * 旧做法：按空格和 x 拆分字符串
+     */
+    @Benchmark
+    public int[] wmSizeSplit() {
+        String[] parts = physical.split(" ");
+        String[] dimensions = parts[2].trim().split("x");
+        return new int[]{Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1])};
+    }
+}
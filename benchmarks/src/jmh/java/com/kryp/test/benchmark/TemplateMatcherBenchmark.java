@@ -0,0 +1,81 @@
+package com.kryp.test.benchmark;
+
+import com.kryp.test.FrameRegion;
+import com.kryp.test.StreamingFrameDecoder;
+import com.kryp.test.TemplateMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模板匹配
+ * 模板为空闲帧中的按钮，在顶部 30% 区域中查找；与 OcrPreprocessorBenchmark 同一区域，可以直接对比 OCR 前的开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TemplateMatcherBenchmark {
+    // 样本帧中按钮的位置和尺寸
+    private static final int BUTTON_X = 240;
+    private static final int BUTTON_Y = 320;
+    private static final int BUTTON_WIDTH = 600;
+    private static final int BUTTON_HEIGHT = 140;
+
+    @Param({SampleFrames.IDLE, SampleFrames.CHANGED})
+    public String frame;
+
+    @Param({"1.0", "0.5"})
+    public float scale;
+
+    private final TemplateMatcher matcher = new TemplateMatcher();
+    private TemplateMatcher.Template template;
+    private int[] pixels;
+    private int width;
+    private int height;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        StreamingFrameDecoder decoder = new StreamingFrameDecoder();
+        StreamingFrameDecoder.DecodedRegion button = decoder.decodePng(
+            new ByteArrayInputStream(SampleFrames.png(SampleFrames.IDLE)),
+            FrameRegion.ofPixels(BUTTON_X, BUTTON_Y, BUTTON_X + BUTTON_WIDTH, BUTTON_Y + BUTTON_HEIGHT));
+        template = TemplateMatcher.Template.fromPixels(button.pixels.clone(), button.width, button.height)
+            .scaled(scale);
+
+        StreamingFrameDecoder.DecodedRegion region = decoder.decodePng(
+            new ByteArrayInputStream(SampleFrames.png(frame)), FrameRegion.topRatio(0.3f));
+        width = region.width;
+        height = region.height;
+        pixels = region.pixels.clone();
+        if (scale != 1f) {
+            // 模拟屏幕录制缩放后的截图
+            int w = Math.round(width * scale);
+            int h = Math.round(height * scale);
+            int[] scaled = new int[w * h];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    scaled[y * w + x] = pixels[(int) (y / scale) * width + (int) (x / scale)];
+                }
+            }
+            pixels = scaled;
+            width = w;
+            height = h;
+        }
+    }
+
+    @Benchmark
+    public TemplateMatcher.Match match() {
+        return matcher.match(template, pixels, width, height);
+    }
+}
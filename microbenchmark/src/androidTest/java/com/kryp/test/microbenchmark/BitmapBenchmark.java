@@ -0,0 +1,142 @@
+package com.kryp.test.microbenchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.kryp.test.BitmapPool;
+import com.kryp.test.FrameChangeGate;
+import com.kryp.test.FrameRegion;
+import com.kryp.test.StreamingFrameDecoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 截图处理中依赖 Android API 的部分：整屏解码、区域解码、裁剪和取像素
+ * 与 JVM 上的 FrameDecodeBenchmark 使用同一张样例截图，方便对照。
+ */
+@RunWith(AndroidJUnit4.class)
+public class BitmapBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final FrameRegion top = FrameRegion.topRatio(0.3f);
+    private byte[] png;
+    private Bitmap frame;
+    private Rect topRect;
+
+    @Before
+    public void setUp() throws IOException {
+        png = readAsset("frames/idle.png");
+        frame = BitmapFactory.decodeByteArray(png, 0, png.length);
+        int[] bounds = top.resolve(frame.getWidth(), frame.getHeight());
+        topRect = new Rect(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    @After
+    public void tearDown() {
+        frame.recycle();
+        BitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void decodeFullBitmapFactory() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BitmapFactory.decodeByteArray(png, 0, png.length).recycle();
+        }
+    }
+
+    @Test
+    public void decodeTopRegionDecoder() throws IOException {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(png, 0, png.length, false);
+            decoder.decodeRegion(topRect, null).recycle();
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * 应用中区域截图的做法：流式解码到像素数组，再写入池中的 Bitmap
+     */
+    @Test
+    public void decodeTopStreaming() throws IOException {
+        StreamingFrameDecoder decoder = new StreamingFrameDecoder();
+        BitmapPool pool = BitmapPool.getInstance();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            StreamingFrameDecoder.DecodedRegion region = decoder.decodePng(new ByteArrayInputStream(png), top);
+            Bitmap bitmap = pool.acquire(region.width, region.height);
+            bitmap.setPixels(region.pixels, 0, region.width, 0, 0, region.width, region.height);
+            pool.release(bitmap);
+        }
+    }
+
+    @Test
+    public void cropCreateBitmap() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Bitmap.createBitmap(frame, topRect.left, topRect.top, topRect.width(), topRect.height()).recycle();
+        }
+    }
+
+    /**
+     * 应用中裁剪的做法：绘制到池中的 Bitmap
+     */
+    @Test
+    public void cropPooledCanvas() {
+        BitmapPool pool = BitmapPool.getInstance();
+        Canvas canvas = new Canvas();
+        Rect dst = new Rect(0, 0, topRect.width(), topRect.height());
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Bitmap crop = pool.acquire(topRect.width(), topRect.height());
+            canvas.setBitmap(crop);
+            canvas.drawBitmap(frame, topRect, dst, null);
+            canvas.setBitmap(null);
+            pool.release(crop);
+        }
+    }
+
+    @Test
+    public void getPixelsAndChangeGate() {
+        int width = topRect.width();
+        int height = topRect.height();
+        int[] pixels = new int[width * height];
+        FrameChangeGate gate = new FrameChangeGate(FrameChangeGate.DEFAULT_THRESHOLD);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            frame.getPixels(pixels, 0, width, topRect.left, topRect.top, width, height);
+            gate.hasChanged(pixels, width, height);
+        }
+    }
+
+    static byte[] readAsset(String name) throws IOException {
+        try (InputStream in = InstrumentationRegistry.getInstrumentation().getContext().getAssets().open(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
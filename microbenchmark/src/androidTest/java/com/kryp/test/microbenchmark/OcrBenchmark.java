@@ -0,0 +1,67 @@
+package com.kryp.test.microbenchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.chinese.ChineseTextRecognizerOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * ML Kit 中文识别：整屏与顶部 30% 区域
+ * 直接调用识别器，不经过 OcrHelper 的结果缓存。
+ */
+@RunWith(AndroidJUnit4.class)
+public class OcrBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private TextRecognizer recognizer;
+    private Bitmap frame;
+    private Bitmap top;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] png = BitmapBenchmark.readAsset("frames/idle.png");
+        frame = BitmapFactory.decodeByteArray(png, 0, png.length);
+        top = Bitmap.createBitmap(frame, 0, 0, frame.getWidth(), (int) (frame.getHeight() * 0.3f));
+        recognizer = TextRecognition.getClient(new ChineseTextRecognizerOptions.Builder().build());
+        // 首次识别会加载模型，不计入结果
+        Tasks.await(recognizer.process(InputImage.fromBitmap(top, 0)));
+    }
+
+    @After
+    public void tearDown() {
+        recognizer.close();
+        top.recycle();
+        frame.recycle();
+    }
+
+    @Test
+    public void recognizeFull() throws Exception {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Tasks.await(recognizer.process(InputImage.fromBitmap(frame, 0)));
+        }
+    }
+
+    @Test
+    public void recognizeTop() throws Exception {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Tasks.await(recognizer.process(InputImage.fromBitmap(top, 0)));
+        }
+    }
+}